@@ -0,0 +1,160 @@
+package com.example.aurora;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//Evaluates every configured AlertRule against a forecast in a single pass.
+//Rules are judged on the viewing score of their location rather than the bare probability, so a forecast nobody can
+//see, in daylight or under a bright moon, does not alert. A ViewingScorer over the rule locations scores them all in
+//one pass, and is only rebuilt when the rules change. Per rule it applies rise/fall hysteresis, a cooldown between
+//alerts, and suppresses repeats: while a rule is raised it only alerts again if the score has climbed by at least
+//ESCALATION_STEP since its last alert.
+//Rule state lives in parallel primitive arrays, so evaluation allocates nothing. Not thread safe.
+public class AlertEngine {
+
+    //Receives each alert the evaluation decides to fire, with the viewing score (0-100) that fired it
+    public interface Listener {
+        void onAlert(AlertRule rule, int score);
+    }
+
+    static final int ESCALATION_STEP = 10;
+
+    private final List<AlertRule> rules = new ArrayList<>();
+    private boolean[] raised = new boolean[0];
+    private long[] lastAlertAt = new long[0];
+    private int[] lastAlertScore = new int[0];
+    //built from the rule locations on the next evaluation after they change
+    private ViewingScorer scorer;
+    private double[] probabilities;
+    private double[] scores;
+
+    //Adds a rule, or replaces the rule with the same id. A replaced rule keeps its alert state.
+    public void setRule(AlertRule rule) {
+        int i = indexOf(rule.getId());
+        scorer = null;
+        if (i >= 0) {
+            rules.set(i, rule);
+            return;
+        }
+        rules.add(rule);
+        int size = rules.size();
+        raised = Arrays.copyOf(raised, size);
+        lastAlertAt = Arrays.copyOf(lastAlertAt, size);
+        lastAlertScore = Arrays.copyOf(lastAlertScore, size);
+        lastAlertAt[size - 1] = Long.MIN_VALUE / 2;
+    }
+
+    //removes the rule with the given id, if there is one
+    public void removeRule(String id) {
+        int i = indexOf(id);
+        if (i < 0) {
+            return;
+        }
+        rules.remove(i);
+        scorer = null;
+        int moved = rules.size() - i;
+        System.arraycopy(raised, i + 1, raised, i, moved);
+        System.arraycopy(lastAlertAt, i + 1, lastAlertAt, i, moved);
+        System.arraycopy(lastAlertScore, i + 1, lastAlertScore, i, moved);
+        //shrink to the rule count, so a rule added next starts from fresh state rather than the old last slot's
+        raised = Arrays.copyOf(raised, rules.size());
+        lastAlertAt = Arrays.copyOf(lastAlertAt, rules.size());
+        lastAlertScore = Arrays.copyOf(lastAlertScore, rules.size());
+    }
+
+    //returns the rule with the given id, or null
+    public AlertRule getRule(String id) {
+        int i = indexOf(id);
+        return i >= 0 ? rules.get(i) : null;
+    }
+
+    //returns the rule at the given position, in the order rules were added
+    public AlertRule getRule(int index) {
+        return rules.get(index);
+    }
+
+    //Restores the alert state of a rule persisted by an earlier process, so a restart does not repeat its last alert
+    public void restoreState(String id, boolean isRaised, long alertAt, int alertScore) {
+        int i = indexOf(id);
+        if (i >= 0) {
+            raised[i] = isRaised;
+            lastAlertAt[i] = alertAt;
+            lastAlertScore[i] = alertScore;
+        }
+    }
+
+    //returns whether the rule at the given position has alerted and not yet fallen below its fall threshold
+    public boolean isRaised(int index) {
+        return raised[index];
+    }
+
+    //returns the time of the last alert of the rule at the given position
+    public long getLastAlertAt(int index) {
+        return lastAlertAt[index];
+    }
+
+    //returns the viewing score of the last alert of the rule at the given position
+    public int getLastAlertScore(int index) {
+        return lastAlertScore[index];
+    }
+
+    //returns the number of configured rules
+    public int size() {
+        return rules.size();
+    }
+
+    //Evaluates all rules against the grid at the given time, reporting each alert to the listener with its viewing score
+    public void evaluate(AuroraGrid grid, long now, Listener listener) {
+        if (scorer == null) {
+            double[] latitudes = new double[rules.size()];
+            double[] longitudes = new double[rules.size()];
+            for (int i = 0; i < rules.size(); i++) {
+                latitudes[i] = rules.get(i).getLatitude();
+                longitudes[i] = rules.get(i).getLongitude();
+            }
+            scorer = new ViewingScorer(latitudes, longitudes);
+            probabilities = new double[rules.size()];
+            scores = new double[rules.size()];
+        }
+        scorer.score(grid, now, probabilities, scores);
+        for (int i = 0; i < rules.size(); i++) {
+            AlertRule rule = rules.get(i);
+            int score = (int) Math.round(scores[i]);
+            if (evaluate(i, rule, score, now)) {
+                listener.onAlert(rule, score);
+            }
+        }
+    }
+
+    //Applies the hysteresis, cooldown and duplicate rules to one viewing score. Returns whether an alert should fire.
+    private boolean evaluate(int i, AlertRule rule, int score, long now) {
+        if (raised[i]) {
+            if (score < rule.getFallThreshold()) {
+                raised[i] = false;
+                return false;
+            }
+            if (score < lastAlertScore[i] + ESCALATION_STEP) {
+                return false;
+            }
+        } else if (score <= rule.getRiseThreshold()) {
+            return false;
+        }
+        if (now - lastAlertAt[i] < rule.getCooldownMillis()) {
+            return false;
+        }
+        raised[i] = true;
+        lastAlertAt[i] = now;
+        lastAlertScore[i] = score;
+        return true;
+    }
+
+    private int indexOf(String id) {
+        for (int i = 0; i < rules.size(); i++) {
+            if (rules.get(i).getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.aurora;
+
+//Immutable configuration of one aurora alert: where to watch, and the thresholds that fire and re-arm it.
+//An alert fires when the viewing score (see ViewingScorer) rises above riseThreshold, and re-arms only once it has fallen below
+//fallThreshold, so a value hovering around the threshold does not alert over and over.
+public final class AlertRule {
+
+    public static final int DEFAULT_RISE_THRESHOLD = 10;
+    public static final int DEFAULT_FALL_THRESHOLD = 5;
+    public static final long DEFAULT_COOLDOWN = 60 * 60 * 1000;
+
+    private final String id;
+    private final double latitude;
+    private final double longitude;
+    private final int riseThreshold;
+    private final int fallThreshold;
+    private final long cooldownMillis;
+
+    public AlertRule(String id, double latitude, double longitude, int riseThreshold, int fallThreshold, long cooldownMillis) {
+        if (fallThreshold > riseThreshold) {
+            throw new IllegalArgumentException("Fall threshold " + fallThreshold + " is above rise threshold " + riseThreshold);
+        }
+        this.id = id;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.riseThreshold = riseThreshold;
+        this.fallThreshold = fallThreshold;
+        this.cooldownMillis = cooldownMillis;
+    }
+
+    //creates a rule with the default thresholds and cooldown
+    public AlertRule(String id, double latitude, double longitude) {
+        this(id, latitude, longitude, DEFAULT_RISE_THRESHOLD, DEFAULT_FALL_THRESHOLD, DEFAULT_COOLDOWN);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public int getRiseThreshold() {
+        return riseThreshold;
+    }
+
+    public int getFallThreshold() {
+        return fallThreshold;
+    }
+
+    public long getCooldownMillis() {
+        return cooldownMillis;
+    }
+
+    //returns a copy of the rule watching a different location
+    public AlertRule movedTo(double latitude, double longitude) {
+        return new AlertRule(id, latitude, longitude, riseThreshold, fallThreshold, cooldownMillis);
+    }
+}
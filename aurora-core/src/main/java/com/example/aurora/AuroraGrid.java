@@ -0,0 +1,104 @@
+package com.example.aurora;
+
+//Immutable worldwide aurora probability grid decoded from the NOAA OVATION feed.
+//Probabilities are stored as one byte per one-degree cell, longitude-major, so the whole forecast takes about 65 KB.
+public final class AuroraGrid {
+
+    public static final int LONGITUDES = 360;
+    public static final int LATITUDES = 181;
+    public static final int CELLS = LONGITUDES * LATITUDES;
+
+    private final byte[] cells;
+    private final long observationTime;
+    private final long forecastTime;
+
+    //Wraps a filled cell array. The array is owned by the grid from this point on and must not be modified.
+    AuroraGrid(byte[] cells, long observationTime, long forecastTime) {
+        if (cells.length != CELLS) {
+            throw new IllegalArgumentException("Expected " + CELLS + " cells, got " + cells.length);
+        }
+        this.cells = cells;
+        this.observationTime = observationTime;
+        this.forecastTime = forecastTime;
+    }
+
+    //Returns the flat cell index for a whole-degree longitude (any range, wrapped to 0-359) and latitude (clamped to -90-90)
+    public static int index(int longitude, int latitude) {
+        longitude %= LONGITUDES;
+        if (longitude < 0) {
+            longitude += LONGITUDES;
+        }
+        if (latitude < -90) {
+            latitude = -90;
+        } else if (latitude > 90) {
+            latitude = 90;
+        }
+        return longitude * LATITUDES + latitude + 90;
+    }
+
+    //Returns the probability (0-100) of the cell containing the given whole-degree coordinates
+    public int probability(int longitude, int latitude) {
+        return cells[index(longitude, latitude)];
+    }
+
+    //Returns the probability (0-100) at any latitude and longitude in degrees, interpolated bilinearly between the four
+    //surrounding cells. Longitude wraps across the antimeridian, latitude is clamped to the poles. Allocation free.
+    public double probabilityAt(double latitude, double longitude) {
+        double x = longitude % LONGITUDES;
+        if (x < 0) {
+            x += LONGITUDES;
+        }
+        double y = latitude + 90;
+        if (y < 0) {
+            y = 0;
+        } else if (y > LATITUDES - 1) {
+            y = LATITUDES - 1;
+        }
+
+        int x0 = (int) x;
+        int y0 = (int) y;
+        if (x0 >= LONGITUDES) {
+            x0 = LONGITUDES - 1;
+        }
+        int x1 = x0 + 1 == LONGITUDES ? 0 : x0 + 1;
+        int y1 = y0 + 1 == LATITUDES ? y0 : y0 + 1;
+        double fx = x - x0;
+        double fy = y - y0;
+
+        int row0 = x0 * LATITUDES;
+        int row1 = x1 * LATITUDES;
+        double west = cells[row0 + y0] + (cells[row0 + y1] - cells[row0 + y0]) * fy;
+        double east = cells[row1 + y0] + (cells[row1 + y1] - cells[row1 + y0]) * fy;
+        return west + (east - west) * fx;
+    }
+
+    //Batch variant of probabilityAt: interpolates every (latitudes[i], longitudes[i]) pair into out[i] in a single call
+    public void probabilityAt(double[] latitudes, double[] longitudes, double[] out) {
+        if (latitudes.length != longitudes.length || out.length < latitudes.length) {
+            throw new IllegalArgumentException("Coordinate and output arrays must have matching lengths");
+        }
+        for (int i = 0; i < latitudes.length; i++) {
+            out[i] = probabilityAt(latitudes[i], longitudes[i]);
+        }
+    }
+
+    //Exposes the backing cell array to the persistence code in this package. Callers must not modify it.
+    byte[] cells() {
+        return cells;
+    }
+
+    //returns the probability stored at a flat cell index
+    public int cell(int index) {
+        return cells[index];
+    }
+
+    //Observation time of the forecast in epoch milliseconds, or 0 if the feed did not provide one
+    public long getObservationTime() {
+        return observationTime;
+    }
+
+    //Forecast time of the forecast in epoch milliseconds, or 0 if the feed did not provide one
+    public long getForecastTime() {
+        return forecastTime;
+    }
+}
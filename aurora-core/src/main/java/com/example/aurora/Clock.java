@@ -0,0 +1,15 @@
+package com.example.aurora;
+
+//Source of wall clock time, so time-dependent logic can run against a fake clock off the device
+public interface Clock {
+
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long now() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    //returns the current time in epoch milliseconds
+    long now();
+}
@@ -0,0 +1,21 @@
+package com.example.aurora;
+
+//Published when the phone gains or loses a working internet connection, or the connection changes between metered and unmetered
+public final class ConnectivityChanged {
+
+    private final boolean connected;
+    private final boolean unmetered;
+
+    public ConnectivityChanged(boolean connected, boolean unmetered) {
+        this.connected = connected;
+        this.unmetered = unmetered;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public boolean isUnmetered() {
+        return unmetered;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.aurora;
+
+//Low-precision positions of the sun and moon, computed on the device without any network access.
+//The sun uses the Astronomical Almanac's low-precision formulae, good to about 0.01 degrees. The moon sums the largest
+//periodic terms of the ELP-2000/82 series as tabulated by Meeus (Astronomical Algorithms, tables 47.A and 47.B),
+//good to a few tenths of a degree, which is far finer than matters for judging how dark the sky is.
+//Plain Java, stateless and allocation free; callers pass the output arrays.
+public final class Ephemeris {
+
+    //Julian date of the Unix epoch, and of the J2000.0 epoch the series are referred to
+    private static final double UNIX_EPOCH_JD = 2440587.5;
+    private static final double J2000_JD = 2451545.0;
+    private static final double DAY_MILLIS = 86400000.0;
+
+    //Moon longitude terms: multiples of D, M, M' and F, then the sine coefficient in micro-degrees
+    private static final int[] LONGITUDE_TERMS = {
+            0, 0, 1, 0, 6288774,
+            2, 0, -1, 0, 1274027,
+            2, 0, 0, 0, 658314,
+            0, 0, 2, 0, 213618,
+            0, 1, 0, 0, -185116,
+            0, 0, 0, 2, -114332,
+            2, 0, -2, 0, 58793,
+            2, -1, -1, 0, 57066,
+            2, 0, 1, 0, 53322,
+            2, -1, 0, 0, 45758,
+            0, 1, -1, 0, -40923,
+            1, 0, 0, 0, -34720,
+            0, 1, 1, 0, -30383,
+            2, 0, 0, -2, 15327,
+            0, 0, 1, 2, -12528,
+            0, 0, 1, -2, 10980,
+    };
+
+    //Moon latitude terms, in the same layout
+    private static final int[] LATITUDE_TERMS = {
+            0, 0, 0, 1, 5128122,
+            0, 0, 1, 1, 280602,
+            0, 0, 1, -1, 277693,
+            2, 0, 0, -1, 173237,
+            2, 0, -1, 1, 55413,
+            2, 0, -1, -1, 46271,
+            2, 0, 0, 1, 32573,
+            0, 0, 2, 1, 17198,
+            2, 0, 1, -1, 9266,
+            0, 0, 2, -1, 8822,
+    };
+
+    private Ephemeris() {
+    }
+
+    //returns the days since J2000.0 of a time in epoch milliseconds
+    static double daysSinceJ2000(long time) {
+        return time / DAY_MILLIS + UNIX_EPOCH_JD - J2000_JD;
+    }
+
+    //Returns the Greenwich mean sidereal time in radians, 0 to 2 pi
+    public static double siderealTime(long time) {
+        double d = daysSinceJ2000(time);
+        return Math.toRadians(normalize(280.46061837 + 360.98564736629 * d));
+    }
+
+    //Writes the sun's right ascension and declination in radians into out[0] and out[1], and its ecliptic longitude
+    //in radians into out[2]
+    public static void sun(long time, double[] out) {
+        double d = daysSinceJ2000(time);
+        double meanLongitude = 280.460 + 0.9856474 * d;
+        double anomaly = Math.toRadians(357.528 + 0.9856003 * d);
+        double longitude = Math.toRadians(meanLongitude + 1.915 * Math.sin(anomaly) + 0.020 * Math.sin(2 * anomaly));
+        equatorial(longitude, 0, obliquity(d), out);
+        out[2] = longitude;
+    }
+
+    //Writes the moon's right ascension and declination in radians into out[0] and out[1], and the illuminated
+    //fraction of its disc, 0 at new moon to 1 at full moon, into out[2]
+    public static void moon(long time, double[] out) {
+        double d = daysSinceJ2000(time);
+        double t = d / 36525;
+        double meanLongitude = 218.3164477 + 481267.88123421 * t;
+        double elongation = Math.toRadians(297.8501921 + 445267.1114034 * t);
+        double sunAnomaly = Math.toRadians(357.5291092 + 35999.0502909 * t);
+        double moonAnomaly = Math.toRadians(134.9633964 + 477198.8675055 * t);
+        double latitudeArgument = Math.toRadians(93.2720950 + 483202.0175233 * t);
+
+        double longitude = meanLongitude + series(LONGITUDE_TERMS, elongation, sunAnomaly, moonAnomaly, latitudeArgument);
+        double latitude = series(LATITUDE_TERMS, elongation, sunAnomaly, moonAnomaly, latitudeArgument);
+        double lambda = Math.toRadians(longitude);
+        double beta = Math.toRadians(latitude);
+
+        //the sun's longitude follows from the same day count; the phase angle is taken as the moon-sun elongation
+        sun(time, out);
+        double cosElongation = Math.cos(beta) * Math.cos(lambda - out[2]);
+        equatorial(lambda, beta, obliquity(d), out);
+        out[2] = (1 - cosElongation) / 2;
+    }
+
+    //Returns the altitude in radians of a body at the given right ascension and declination, for an observer at the
+    //given latitude (as sine and cosine) and east longitude in radians, at the given Greenwich sidereal time
+    public static double altitude(double rightAscension, double declination, double sinLatitude, double cosLatitude,
+                                  double longitude, double siderealTime) {
+        double hourAngle = siderealTime + longitude - rightAscension;
+        double sinAltitude = sinLatitude * Math.sin(declination) + cosLatitude * Math.cos(declination) * Math.cos(hourAngle);
+        return Math.asin(Math.max(-1, Math.min(1, sinAltitude)));
+    }
+
+    //sums a table of sine terms, in degrees
+    private static double series(int[] terms, double elongation, double sunAnomaly, double moonAnomaly, double latitudeArgument) {
+        double sum = 0;
+        for (int i = 0; i < terms.length; i += 5) {
+            double argument = terms[i] * elongation + terms[i + 1] * sunAnomaly + terms[i + 2] * moonAnomaly + terms[i + 3] * latitudeArgument;
+            sum += terms[i + 4] * Math.sin(argument);
+        }
+        return sum / 1e6;
+    }
+
+    private static double obliquity(double d) {
+        return Math.toRadians(23.439 - 0.0000004 * d);
+    }
+
+    //converts ecliptic longitude and latitude to right ascension and declination in out[0] and out[1]
+    private static void equatorial(double lambda, double beta, double epsilon, double[] out) {
+        double sinLambda = Math.sin(lambda);
+        out[0] = Math.atan2(sinLambda * Math.cos(epsilon) - Math.tan(beta) * Math.sin(epsilon), Math.cos(lambda));
+        out[1] = Math.asin(Math.sin(beta) * Math.cos(epsilon) + Math.cos(beta) * Math.sin(epsilon) * sinLambda);
+    }
+
+    private static double normalize(double degrees) {
+        degrees %= 360;
+        return degrees < 0 ? degrees + 360 : degrees;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.aurora;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+//Typed publish/subscribe between the service and its consumers, with conflation instead of queueing.
+//Each subscription owns a single-slot mailbox: publishing swaps the new event into the slot and schedules a delivery
+//on the subscriber's executor only if the slot was empty. A slow subscriber therefore never builds a backlog and
+//always receives the latest event of its type; intermediate ones are dropped. Publishing allocates nothing beyond the
+//event itself, and each event type must be published from a single thread at a time.
+//The latest event of each type is kept, and delivered straight away to new subscribers. Recording the latest event and
+//offering it to the mailboxes happen under the type's lock, which a new subscriber takes to register and read the
+//latest event, so the replay can never overtake a newer event. The lock is only contended while someone subscribes.
+//Plain Java.
+public final class EventBus {
+
+    public interface Subscriber<E> {
+        void onEvent(E event);
+    }
+
+    //Handle for ending a subscription
+    public interface Subscription {
+        //stops deliveries; an event already handed to the executor may still arrive
+        void close();
+    }
+
+    private final ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<Mailbox<?>>> subscribers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, Object> latest = new ConcurrentHashMap<>();
+
+    //Subscribes to events of exactly the given type, delivered on the executor. The latest event of the type, if any,
+    //is delivered first.
+    public <E> Subscription subscribe(Class<E> type, Subscriber<? super E> subscriber, Executor executor) {
+        final Mailbox<E> mailbox = new Mailbox<>(subscriber, executor);
+        final CopyOnWriteArrayList<Mailbox<?>> list = listFor(type);
+        synchronized (list) {
+            list.add(mailbox);
+            Object last = latest.get(type);
+            if (last != null) {
+                mailbox.offer(type.cast(last));
+            }
+        }
+        return new Subscription() {
+            @Override
+            public void close() {
+                mailbox.closed = true;
+                list.remove(mailbox);
+            }
+        };
+    }
+
+    //Publishes an event to every subscriber of its type
+    @SuppressWarnings("unchecked")
+    public <E> void publish(E event) {
+        Class<?> type = event.getClass();
+        CopyOnWriteArrayList<Mailbox<?>> list = listFor(type);
+        synchronized (list) {
+            latest.put(type, event);
+            for (Mailbox<?> mailbox : list) {
+                ((Mailbox<E>) mailbox).offer(event);
+            }
+        }
+    }
+
+    //returns the latest event of the type, or null if none has been published
+    public <E> E latest(Class<E> type) {
+        return type.cast(latest.get(type));
+    }
+
+    private CopyOnWriteArrayList<Mailbox<?>> listFor(Class<?> type) {
+        CopyOnWriteArrayList<Mailbox<?>> list = subscribers.get(type);
+        if (list == null) {
+            CopyOnWriteArrayList<Mailbox<?>> created = new CopyOnWriteArrayList<>();
+            list = subscribers.putIfAbsent(type, created);
+            if (list == null) {
+                list = created;
+            }
+        }
+        return list;
+    }
+
+    private static final class Mailbox<E> implements Runnable {
+
+        private final AtomicReference<E> slot = new AtomicReference<>();
+        private final Subscriber<? super E> subscriber;
+        private final Executor executor;
+        volatile boolean closed = false;
+
+        Mailbox(Subscriber<? super E> subscriber, Executor executor) {
+            this.subscriber = subscriber;
+            this.executor = executor;
+        }
+
+        //Replaces any undelivered event; only a previously empty slot needs a delivery scheduled
+        void offer(E event) {
+            if (slot.getAndSet(event) == null) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            E event = slot.getAndSet(null);
+            if (event != null && !closed) {
+                subscriber.onEvent(event);
+            }
+        }
+    }
+}
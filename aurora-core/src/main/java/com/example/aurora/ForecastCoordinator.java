@@ -0,0 +1,274 @@
+package com.example.aurora;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+//Derives what the app shows and alerts on from the snapshots a ForecastPipeline publishes and the locations reported
+//to it: the probability and trend at the last location, the watchlist sample, the alert evaluation, and the bus events
+//and widget refreshes that follow from them. ProbabilityNetworkService and the replay harness both drive one, so the
+//harness measures the orchestration the phone runs. Persistence, notifications and reading the trend from the history
+//store are left to the Host. Must be used from a single thread, the main thread on the phone; the watchlist and its
+//result may be read from any thread.
+public class ForecastCoordinator implements WidgetRefreshEngine.StateProvider {
+
+    //The platform side of the coordinator, called on the coordinator's thread
+    public interface Host {
+        //A snapshot with a new grid was published; called before anything is derived from it
+        void onNewGrid(AuroraGrid grid);
+
+        //The location moved to another grid cell. The host works out the trend there and hands it to publishTrend.
+        void requestTrend(double longitude, double latitude, int cell);
+
+        //A rule was added; the host may restore the alert state it persisted for the rule's id
+        void onAlertRuleAdded(AlertRule rule);
+
+        void onAlert(AlertRule rule, int score);
+
+        //Every rule has been evaluated; the host may persist their alert state
+        void onAlertsEvaluated();
+    }
+
+    public static final String CURRENT_LOCATION_RULE = "current";
+    //How often the watchlist is scored again between forecasts; the viewing score follows the darkness at each site
+    public static final long WATCHLIST_RESCORE_INTERVAL = 10 * 60 * 1000;
+
+    private final ForecastPipeline pipeline;
+    private final EventBus eventBus;
+    private final Metrics metrics;
+    private final Clock clock;
+    private final Host host;
+    private final AlertEngine alertEngine = new AlertEngine();
+    private final AlertEngine.Listener alertListener = new AlertEngine.Listener() {
+        @Override
+        public void onAlert(AlertRule rule, int score) {
+            metrics.increment(Metrics.ALERTS);
+            host.onAlert(rule, score);
+        }
+    };
+
+    private volatile Watchlist watchlist = Watchlist.EMPTY;
+    private volatile WatchlistResult watchlistResult = WatchlistResult.EMPTY;
+    private int latestProbability = -1;
+    private int latestTrend = 0;
+    private int trendCell = -1;
+    private double lastLongitude = Double.NaN;
+    private double lastLatitude = Double.NaN;
+    //the grid of the last published snapshot; snapshots that only bring new space weather share it
+    private AuroraGrid publishedGrid;
+
+    public ForecastCoordinator(ForecastPipeline pipeline, EventBus eventBus, Metrics metrics, Clock clock, Host host) {
+        this.pipeline = pipeline;
+        this.eventBus = eventBus;
+        this.metrics = metrics;
+        this.clock = clock;
+        this.host = host;
+    }
+
+    //Refreshes the widget on every event it shows, delivered on the executor, and whenever the watchlist changes
+    public void attachWidget(final WidgetRefreshEngine engine, Executor executor) {
+        EventBus.Subscriber<Object> refresh = new EventBus.Subscriber<Object>() {
+            @Override
+            public void onEvent(Object event) {
+                engine.requestRefresh();
+            }
+        };
+        eventBus.subscribe(ForecastUpdated.class, refresh, executor);
+        eventBus.subscribe(LocalProbabilityChanged.class, refresh, executor);
+        eventBus.subscribe(ConnectivityChanged.class, refresh, executor);
+        eventBus.subscribe(WatchlistUpdated.class, refresh, executor);
+    }
+
+    //Handles a snapshot from the pipeline's listener. A new grid is sampled for the watchlist and the last location,
+    //then evaluated against the alert rules; a snapshot that only brings new space weather is just passed on.
+    public void onSnapshotPublished(ForecastSnapshot snapshot) {
+        if (snapshot.getGrid() == publishedGrid) {
+            //only the space weather changed; the grid-derived state is still current
+            eventBus.publish(new ForecastUpdated(snapshot));
+            return;
+        }
+        publishedGrid = snapshot.getGrid();
+        host.onNewGrid(snapshot.getGrid());
+        publishWatchlistResult(watchlist.sample(snapshot, clock.now()));
+        if (!Double.isNaN(lastLatitude)) {
+            findProbability(lastLongitude, lastLatitude);
+        }
+        eventBus.publish(new ForecastUpdated(snapshot));
+        evaluateAlerts(snapshot.getGrid());
+    }
+
+    //Given a longitude and latitude, this method finds the probability of aurora at that location in the retrieved grid,
+    //interpolated between the surrounding one-degree cells, or -1 if there is no forecast yet. The location is kept and
+    //recomputed for every new grid. A LocalProbabilityChanged event is published if the probability differs from the
+    //last one published; the trend follows in its own event once the host has it.
+    public int findProbability(double longitude, double latitude) {
+        long started = System.nanoTime();
+        metrics.increment(Metrics.LOOKUPS);
+        lastLongitude = longitude;
+        lastLatitude = latitude;
+        ForecastSnapshot current = pipeline.getSnapshot();
+        if (moveCurrentLocationRule(longitude, latitude) && current != null) {
+            evaluateAlerts(current.getGrid());
+        }
+        if (current != null) {
+            int probability = (int) Math.round(current.getGrid().probabilityAt(latitude, longitude));
+            metrics.record(Metrics.SNAPSHOT_AGE_S, (clock.now() - current.getGrid().getObservationTime()) / 1000);
+            metrics.record(Metrics.LOOKUP_LATENCY_NS, System.nanoTime() - started);
+            int cell = AuroraGrid.index((int) Math.round(longitude), (int) Math.round(latitude));
+            boolean moved = cell != trendCell;
+            if (moved) {
+                //the old cell's trend does not apply here
+                trendCell = cell;
+                latestTrend = 0;
+                host.requestTrend(longitude, latitude, cell);
+            }
+            if (probability != latestProbability || moved) {
+                latestProbability = probability;
+                eventBus.publish(new LocalProbabilityChanged(latitude, longitude, probability, latestTrend));
+            }
+            return latestProbability;
+        }
+
+        metrics.increment(Metrics.LOOKUP_MISSES);
+        return -1;
+    }
+
+    //Publishes a trend worked out by the host, unless the location has meanwhile moved to another cell or the trend is unchanged
+    public void publishTrend(int cell, int trend) {
+        if (cell != trendCell || trend == latestTrend || pipeline.getSnapshot() == null) {
+            return;
+        }
+        latestTrend = trend;
+        eventBus.publish(new LocalProbabilityChanged(lastLatitude, lastLongitude, latestProbability, trend));
+    }
+
+    //Points the current location alert rule at the given location. Returns true if the rule moved to a different grid cell.
+    private boolean moveCurrentLocationRule(double longitude, double latitude) {
+        AlertRule rule = alertEngine.getRule(CURRENT_LOCATION_RULE);
+        if (rule == null) {
+            setAlertRule(new AlertRule(CURRENT_LOCATION_RULE, latitude, longitude));
+            return true;
+        }
+        if (Math.round(rule.getLatitude()) == Math.round(latitude) && Math.round(rule.getLongitude()) == Math.round(longitude)) {
+            return false;
+        }
+        alertEngine.setRule(rule.movedTo(latitude, longitude));
+        return true;
+    }
+
+    //Adds or replaces an alert rule, keeping the alert state of a replaced rule. The host is told about a new rule.
+    public void setAlertRule(AlertRule rule) {
+        boolean added = alertEngine.getRule(rule.getId()) == null;
+        alertEngine.setRule(rule);
+        if (added) {
+            host.onAlertRuleAdded(rule);
+        }
+    }
+
+    //removes the alert rule with the given id
+    public void removeAlertRule(String id) {
+        alertEngine.removeRule(id);
+    }
+
+    //Evaluates every alert rule against the grid in one pass
+    private void evaluateAlerts(AuroraGrid forecast) {
+        alertEngine.evaluate(forecast, clock.now(), alertListener);
+        host.onAlertsEvaluated();
+    }
+
+    //Replaces the watchlist, such as with one restored from disk, and sets up an alert rule for each site
+    public void setWatchlist(Watchlist restored) {
+        for (WatchedSite site : restored.getSites()) {
+            setSiteRule(site);
+        }
+        updateWatchlist(restored);
+    }
+
+    //Adds a site to the watchlist, or moves the site with the same name, and samples it from the current forecast
+    public void addWatchedSite(WatchedSite site) {
+        setSiteRule(site);
+        updateWatchlist(watchlist.with(site));
+    }
+
+    //removes the named site from the watchlist
+    public void removeWatchedSite(String name) {
+        removeAlertRule(new WatchedSite(name, 0, 0).getAlertRuleId());
+        updateWatchlist(watchlist.without(name));
+    }
+
+    private void setSiteRule(WatchedSite site) {
+        AlertRule rule = alertEngine.getRule(site.getAlertRuleId());
+        setAlertRule(rule != null ? rule.movedTo(site.getLatitude(), site.getLongitude())
+                : new AlertRule(site.getAlertRuleId(), site.getLatitude(), site.getLongitude()));
+    }
+
+    private void updateWatchlist(Watchlist updated) {
+        watchlist = updated;
+        ForecastSnapshot current = pipeline.getSnapshot();
+        publishWatchlistResult(current != null ? updated.sample(current, clock.now()) : WatchlistResult.EMPTY);
+    }
+
+    //Scores the watchlist again from the current forecast for the current time. The viewing scores depend on how dark
+    //the sky is at each site, so they go stale between forecasts; call this every WATCHLIST_RESCORE_INTERVAL.
+    public void rescoreWatchlist() {
+        ForecastSnapshot current = pipeline.getSnapshot();
+        if (current != null && watchlist.size() > 0) {
+            publishWatchlistResult(watchlist.sample(current, clock.now()));
+        }
+    }
+
+    private void publishWatchlistResult(WatchlistResult result) {
+        watchlistResult = result;
+        eventBus.publish(new WatchlistUpdated(result));
+    }
+
+    //returns the current watchlist
+    public Watchlist getWatchlist() {
+        return watchlist;
+    }
+
+    //returns the probabilities of all watched sites for the latest forecast, in watchlist order
+    public WatchlistResult getWatchlistResult() {
+        return watchlistResult;
+    }
+
+    public AlertEngine getAlertEngine() {
+        return alertEngine;
+    }
+
+    //returns the last location looked up, NaN before the first
+    public double getLastLongitude() {
+        return lastLongitude;
+    }
+
+    public double getLastLatitude() {
+        return lastLatitude;
+    }
+
+    //The widget shows the local probability, the best watched site and the space weather, or that it is offline
+    @Override
+    public String getWidgetText() {
+        ConnectivityChanged connectivity = eventBus.latest(ConnectivityChanged.class);
+        if (connectivity != null && !connectivity.isConnected()) {
+            return "Disconnected, reconnect for aurora probability";
+        }
+        String text = "Latest local aurora probability: " + latestProbability + "%";
+        WatchlistResult result = watchlistResult;
+        int best = result.best();
+        if (best >= 0) {
+            text += "\nBest watched site: " + result.getSite(best).getName()
+                    + " " + Math.round(result.getProbability(best)) + "%, viewing score " + Math.round(result.getScore(best));
+        }
+        ForecastSnapshot current = pipeline.getSnapshot();
+        SpaceWeather weather = current != null ? current.getSpaceWeather() : SpaceWeather.UNKNOWN;
+        if (!Double.isNaN(weather.getKp()) && !Double.isNaN(weather.getBz())) {
+            text += "\nKp " + String.format(Locale.US, "%.1f", weather.getKp())
+                    + ", Bz " + String.format(Locale.US, "%.1f", weather.getBz()) + " nT";
+        }
+        return text;
+    }
+
+    @Override
+    public int getDisplayedProbability() {
+        return latestProbability;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.aurora;
+
+//Fetch stage of the ForecastPipeline. Downloads one product, the OVATION forecast or a SpaceWeatherFeed, with
+//conditional GETs: validators from the last response are sent as If-None-Match/If-Modified-Since, and a 304 is reported
+//as unchanged without any body. Each fetcher has its own freshness policy: data younger than maxAge is not requested
+//again, and stale data at most every minCheckInterval. The download itself goes through an HttpTransport.
+//Must be used from the thread the transport delivers its callbacks on.
+public class ForecastFetcher {
+
+    public static final String OVATION_URL = "https://services.swpc.noaa.gov/json/ovation_aurora_latest.json";
+
+    //NOAA publishes a new OVATION run every few minutes, so a younger forecast is not requested again
+    static final long MIN_REFRESH_INTERVAL = 5 * 60 * 1000;
+
+    //Callbacks for the outcome of a fetch, delivered on the transport's callback thread
+    public interface Listener {
+        void onForecastDownloaded(byte[] body);
+
+        void onForecastUnchanged();
+
+        void onForecastFailed(Exception error);
+    }
+
+    private final HttpTransport transport;
+    private final String url;
+    private final long maxAge;
+    private final long minCheckInterval;
+    private final Listener listener;
+    private final Clock clock;
+    private final Metrics metrics;
+
+    private String etag;
+    private String lastModified;
+    private boolean inFlight = false;
+    private long startedAt;
+    private long checkedAt;
+
+    //The url is a parameter so that the fetcher can be pointed at a local stand-in server
+    public ForecastFetcher(HttpTransport transport, String url, Listener listener, Clock clock, Metrics metrics) {
+        this(transport, url, MIN_REFRESH_INTERVAL, 0, listener, clock, metrics);
+    }
+
+    public ForecastFetcher(HttpTransport transport, String url, long maxAge, long minCheckInterval,
+                           Listener listener, Clock clock, Metrics metrics) {
+        this.transport = transport;
+        this.url = url;
+        this.maxAge = maxAge;
+        this.minCheckInterval = minCheckInterval;
+        this.listener = listener;
+        this.clock = clock;
+        this.metrics = metrics;
+    }
+
+    //Requests a new forecast, unless one is already in flight or the current forecast is too recent to have been superseded
+    public void fetch(AuroraGrid current) {
+        fetch(current != null ? current.getObservationTime() : 0);
+    }
+
+    //Requests the product, unless a request is already in flight or the data held, timed dataTime in epoch milliseconds
+    //or 0 if there is none, is still fresh under this fetcher's policy
+    public void fetch(long dataTime) {
+        if (inFlight) {
+            return;
+        }
+        long now = clock.now();
+        if (dataTime != 0 && (now - dataTime < maxAge || now - checkedAt < minCheckInterval)) {
+            listener.onForecastUnchanged();
+            return;
+        }
+        inFlight = true;
+        startedAt = System.nanoTime();
+        checkedAt = now;
+
+        //validators are only worth sending while there is data to fall back on when the server answers 304
+        String ifNoneMatch = dataTime != 0 ? etag : null;
+        String ifModifiedSince = dataTime != 0 ? lastModified : null;
+        transport.get(url, ifNoneMatch, ifModifiedSince, new HttpTransport.Callback() {
+
+            @Override
+            public void onResponse(byte[] body, String responseEtag, String responseLastModified) {
+                inFlight = false;
+                recordFetch();
+                if (responseEtag != null || responseLastModified != null) {
+                    etag = responseEtag;
+                    lastModified = responseLastModified;
+                }
+                if (body == null) {
+                    metrics.increment(Metrics.FETCHES_UNCHANGED);
+                    listener.onForecastUnchanged();
+                } else {
+                    metrics.add(Metrics.BYTES_DOWNLOADED, body.length);
+                    listener.onForecastDownloaded(body);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                inFlight = false;
+                recordFetch();
+                metrics.increment(Metrics.FETCH_FAILURES);
+                listener.onForecastFailed(error);
+            }
+        });
+    }
+
+    //returns the validators of the last response that had any, to be persisted with the data they describe
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    //Takes over validators persisted with data restored from disk, so the first fetch after a restart can be conditional.
+    //Validators from a response already received are newer and are kept.
+    public void restoreValidators(String etag, String lastModified) {
+        if (this.etag == null && this.lastModified == null) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private void recordFetch() {
+        metrics.increment(Metrics.FETCHES);
+        metrics.record(Metrics.FETCH_LATENCY_MS, (System.nanoTime() - startedAt) / 1000000);
+    }
+}
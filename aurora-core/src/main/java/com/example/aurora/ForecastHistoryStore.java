@@ -0,0 +1,394 @@
+package com.example.aurora;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+//Append-only history of forecast grids, answering "probability at (lat, lon) over the last N hours" queries.
+//
+//Each forecast is stored as a record of (long observation time, byte type, int payload length, payload):
+//  keyframe - the whole grid run-length encoded as (value, varint run) pairs;
+//  delta    - only the cells that changed since the previous record, as (varint unchanged cells skipped, new value) pairs.
+//Most cells are 0 and stay 0 between runs, so a delta is usually a few hundred bytes. A keyframe is written every
+//KEYFRAME_INTERVAL records to bound how far back a query has to start.
+//
+//A time index of record offsets is kept in memory and rebuilt by scanning record headers on open. Queries read the
+//file through a memory mapping and only decode the runs covering the four cells around the queried point, never whole
+//grids. Records older than the retention period are compacted away as new ones are appended. Thread safe.
+public class ForecastHistoryStore {
+
+    public static final long DEFAULT_RETENTION = 48L * 60 * 60 * 1000;
+    static final int KEYFRAME_INTERVAL = 24;
+    static final byte KEYFRAME = 0;
+    static final byte DELTA = 1;
+    static final int RECORD_HEADER_SIZE = 8 + 1 + 4;
+
+    private final File file;
+    private final long retention;
+
+    private RandomAccessFile access;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long mappedSize = -1;
+
+    private long[] times = new long[32];
+    private long[] offsets = new long[32];
+    private boolean[] keyframes = new boolean[32];
+    private int count = 0;
+    private long end = 0;
+
+    private byte[] previous;
+    private int sinceKeyframe = 0;
+
+    public ForecastHistoryStore(File file, long retention) {
+        this.file = file;
+        this.retention = retention;
+    }
+
+    public ForecastHistoryStore(File file) {
+        this(file, DEFAULT_RETENTION);
+    }
+
+    //Opens the store, rebuilding the time index and dropping a record left half-written by a crash
+    public synchronized void open() throws IOException {
+        access = new RandomAccessFile(file, "rw");
+        channel = access.getChannel();
+        scanIndex();
+    }
+
+    public synchronized void close() throws IOException {
+        mapped = null;
+        mappedSize = -1;
+        if (access != null) {
+            access.close();
+            access = null;
+            channel = null;
+        }
+    }
+
+    //returns the number of forecasts in the store
+    public synchronized int size() {
+        return count;
+    }
+
+    //Appends a forecast. Grids not newer than the latest stored one are ignored.
+    public synchronized void append(AuroraGrid grid) throws IOException {
+        if (channel == null) {
+            throw new IOException("History store is not open");
+        }
+        long time = grid.getObservationTime();
+        if (count > 0 && time <= times[count - 1]) {
+            return;
+        }
+        byte[] cells = grid.cells();
+        boolean keyframe = previous == null || sinceKeyframe >= KEYFRAME_INTERVAL;
+        byte[] payload = keyframe ? encodeKeyframe(cells) : encodeDelta(previous, cells);
+        writeRecord(channel, end, time, keyframe, payload);
+        addToIndex(time, end, keyframe);
+        end += RECORD_HEADER_SIZE + payload.length;
+
+        previous = Arrays.copyOf(cells, cells.length);
+        sinceKeyframe = keyframe ? 1 : sinceKeyframe + 1;
+
+        //compact once a quarter of the retention period has piled up, rather than on every append
+        if (times[0] < time - retention - retention / 4) {
+            compact(time - retention);
+        }
+    }
+
+    //Fills timesOut/valuesOut with the interpolated probability at (latitude, longitude) of every forecast observed
+    //at or after since, oldest first, and returns how many were written (at most the arrays' length).
+    //Returns 0 while the store is not open.
+    public synchronized int probabilityHistory(double latitude, double longitude, long since, long[] timesOut, double[] valuesOut) {
+        if (channel == null) {
+            return 0;
+        }
+        int first = 0;
+        while (first < count && times[first] < since) {
+            first++;
+        }
+        if (first == count || timesOut.length == 0) {
+            return 0;
+        }
+        GridSampler sampler = new GridSampler(new double[]{latitude}, new double[]{longitude});
+        int[] cells = new int[4];
+        int maxCell = 0;
+        for (int j = 0; j < 4; j++) {
+            cells[j] = sampler.cellIndex(j);
+            maxCell = Math.max(maxCell, cells[j]);
+        }
+        int[] values = new int[4];
+
+        ByteBuffer buffer = map();
+        int written = 0;
+        for (int r = keyframeBefore(first); r < count && written < timesOut.length; r++) {
+            int payload = (int) offsets[r] + RECORD_HEADER_SIZE;
+            int length = buffer.getInt(payload - 4);
+            if (keyframes[r]) {
+                applyKeyframe(buffer, payload, payload + length, cells, maxCell, values);
+            } else {
+                applyDelta(buffer, payload, payload + length, cells, maxCell, values);
+            }
+            if (r >= first) {
+                double value = 0;
+                for (int j = 0; j < 4; j++) {
+                    value += values[j] * sampler.weight(j);
+                }
+                timesOut[written] = times[r];
+                valuesOut[written] = value;
+                written++;
+            }
+        }
+        return written;
+    }
+
+    //returns the observation time of the oldest stored forecast, or 0 if the store is empty
+    public synchronized long oldestTime() {
+        return count == 0 ? 0 : times[0];
+    }
+
+    //Sets the tracked cells' values from a keyframe, stopping once the runs have passed the highest tracked cell
+    private static void applyKeyframe(ByteBuffer buffer, int position, int limit, int[] cells, int maxCell, int[] values) {
+        int cell = 0;
+        while (position < limit && cell <= maxCell) {
+            byte value = buffer.get(position++);
+            int run = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                run |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            for (int j = 0; j < cells.length; j++) {
+                if (cells[j] >= cell && cells[j] < cell + run) {
+                    values[j] = value;
+                }
+            }
+            cell += run;
+        }
+    }
+
+    //Updates the tracked cells' values from a delta, stopping once the changes have passed the highest tracked cell
+    private static void applyDelta(ByteBuffer buffer, int position, int limit, int[] cells, int maxCell, int[] values) {
+        int cell = 0;
+        while (position < limit) {
+            int skip = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                skip |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            cell += skip;
+            if (cell > maxCell) {
+                return;
+            }
+            byte value = buffer.get(position++);
+            for (int j = 0; j < cells.length; j++) {
+                if (cells[j] == cell) {
+                    values[j] = value;
+                }
+            }
+            cell++;
+        }
+    }
+
+    //Reconstructs the full grid of record r by decoding from the keyframe before it
+    private byte[] reconstruct(int r) {
+        ByteBuffer buffer = map();
+        byte[] cells = new byte[AuroraGrid.CELLS];
+        for (int i = keyframeBefore(r); i <= r; i++) {
+            int position = (int) offsets[i] + RECORD_HEADER_SIZE;
+            int limit = position + buffer.getInt(position - 4);
+            int cell = 0;
+            while (position < limit) {
+                if (keyframes[i]) {
+                    byte value = buffer.get(position++);
+                    int run = readVarint(buffer, position);
+                    position += varintSize(run);
+                    Arrays.fill(cells, cell, cell + run, value);
+                    cell += run;
+                } else {
+                    int skip = readVarint(buffer, position);
+                    position += varintSize(skip);
+                    cell += skip;
+                    cells[cell++] = buffer.get(position++);
+                }
+            }
+        }
+        return cells;
+    }
+
+    private int keyframeBefore(int r) {
+        while (r > 0 && !keyframes[r]) {
+            r--;
+        }
+        return r;
+    }
+
+    //Rewrites the file without the records observed before cutoff; the first record kept becomes a keyframe
+    private void compact(long cutoff) throws IOException {
+        int first = 0;
+        while (first < count - 1 && times[first] < cutoff) {
+            first++;
+        }
+        if (first == 0) {
+            return;
+        }
+        byte[] payload = encodeKeyframe(reconstruct(first));
+        File temp = new File(file.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(temp, "rw");
+        try {
+            FileChannel target = out.getChannel();
+            target.truncate(0);
+            writeRecord(target, 0, times[first], true, payload);
+            if (first + 1 < count) {
+                long from = offsets[first + 1];
+                long position = RECORD_HEADER_SIZE + payload.length;
+                while (from < end) {
+                    long moved = channel.transferTo(from, end - from, target.position(position));
+                    from += moved;
+                    position += moved;
+                }
+            }
+            target.force(false);
+        } finally {
+            out.close();
+        }
+        close();
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            open();
+            throw new IOException("Could not replace " + file);
+        }
+        open();
+    }
+
+    private void scanIndex() throws IOException {
+        count = 0;
+        end = 0;
+        previous = null;
+        sinceKeyframe = 0;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (end + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            channel.read(header, end);
+            long time = header.getLong(0);
+            byte type = header.get(8);
+            int length = header.getInt(9);
+            if ((type != KEYFRAME && type != DELTA) || length < 0 || end + RECORD_HEADER_SIZE + length > size
+                    || (count == 0 && type != KEYFRAME)) {
+                break;
+            }
+            addToIndex(time, end, type == KEYFRAME);
+            sinceKeyframe = type == KEYFRAME ? 1 : sinceKeyframe + 1;
+            end += RECORD_HEADER_SIZE + length;
+        }
+        if (end < size) {
+            channel.truncate(end);
+        }
+        if (count > 0) {
+            previous = reconstruct(count - 1);
+        }
+    }
+
+    private void addToIndex(long time, long offset, boolean keyframe) {
+        if (count == times.length) {
+            times = Arrays.copyOf(times, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+            keyframes = Arrays.copyOf(keyframes, count * 2);
+        }
+        times[count] = time;
+        offsets[count] = offset;
+        keyframes[count] = keyframe;
+        count++;
+    }
+
+    //Maps the file, remapping only if it has grown since the last mapping
+    private ByteBuffer map() {
+        if (mapped == null || mappedSize != end) {
+            try {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+                mappedSize = end;
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not map " + file, e);
+            }
+        }
+        return mapped;
+    }
+
+    private static void writeRecord(FileChannel target, long offset, long time, boolean keyframe, byte[] payload) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putLong(time).put(keyframe ? KEYFRAME : DELTA).putInt(payload.length).put(payload);
+        record.flip();
+        while (record.hasRemaining()) {
+            offset += target.write(record, offset);
+        }
+    }
+
+    private static byte[] encodeKeyframe(byte[] cells) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int i = 0;
+        while (i < cells.length) {
+            byte value = cells[i];
+            int run = 1;
+            while (i + run < cells.length && cells[i + run] == value) {
+                run++;
+            }
+            out.write(value);
+            writeVarint(out, run);
+            i += run;
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeDelta(byte[] before, byte[] after) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int last = 0;
+        for (int i = 0; i < after.length; i++) {
+            if (after[i] != before[i]) {
+                writeVarint(out, i - last);
+                out.write(after[i]);
+                last = i + 1;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer buffer, int position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
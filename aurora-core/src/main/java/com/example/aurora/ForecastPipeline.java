@@ -0,0 +1,290 @@
+package com.example.aurora;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+//Moves a forecast from the network to its readers in three stages:
+//fetch - ForecastFetchers download the OVATION grid and every SpaceWeatherFeed concurrently through the HttpTransport,
+//which must deliver on the callback executor's thread, each under its own freshness policy;
+//parse - a dedicated thread decodes each product, keeping only the newest pending body per product;
+//publish - the grid and the merged space weather are swapped into an AtomicReference as one ForecastSnapshot.
+//Readers on any thread call getSnapshot() without locking and never see a half-built grid. Space weather that arrives
+//before the first grid is held and published with it; later readings republish the current grid with a new version.
+public class ForecastPipeline {
+
+    //Callback for the outcome of each refresh, delivered through the callback executor. Failures are expected in the
+    //field (outages, truncated bodies) and are already counted in the Metrics; the error is passed on for diagnosis.
+    public interface Listener {
+        void onSnapshotPublished(ForecastSnapshot snapshot);
+
+        //the refresh found nothing newer than the current snapshot
+        void onRefreshUnchanged();
+
+        //the grid could not be downloaded or parsed
+        void onRefreshFailed(Exception error);
+
+        //a feed could not be downloaded or parsed; the snapshot keeps the feed's previous reading
+        void onFeedFailed(SpaceWeatherFeed feed, Exception error);
+    }
+
+    private final AtomicReference<ForecastSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final Executor callbackExecutor;
+    private final Clock clock;
+    private final ForecastFetcher fetcher;
+    private final List<SpaceWeatherFeed> feeds;
+    private final List<ForecastFetcher> feedFetchers = new ArrayList<>();
+    private final Listener listener;
+    private final Metrics metrics;
+
+    //Only ever touched from the single parse thread
+    private final OvationParser parser = new OvationParser();
+    //Written only from the parse thread; read on the callback thread for the feeds' freshness
+    private volatile SpaceWeather spaceWeather = SpaceWeather.UNKNOWN;
+
+    //The newest downloaded body of each product that is waiting for the parse thread. A task is queued only when a slot
+    //goes from empty to full, so a newer download replaces a pending older one of the same product, never another product's.
+    private final AtomicReference<byte[]> pendingForecast = new AtomicReference<>();
+    private final List<AtomicReference<byte[]>> pendingFeeds = new ArrayList<>();
+
+    //One parse thread, fed at most one task per product by the pending slots above
+    private final ThreadPoolExecutor parseExecutor;
+    //Set by shutdown. Downloads still in flight may complete afterwards; their bodies are dropped rather than handed
+    //to the stopped parse thread.
+    private volatile boolean closed = false;
+
+    //The listener hears about refreshes of the OVATION grid; feed readings only ever surface as published snapshots.
+    //The app delivers on the main thread and makes the parse thread a low-priority one; a JVM harness can pass any
+    //single-threaded executor, a plain thread factory and an accelerated clock.
+    public ForecastPipeline(HttpTransport transport, String url, List<SpaceWeatherFeed> feeds, Listener listener, Metrics metrics,
+                            Clock clock, Executor callbackExecutor, ThreadFactory parseThreadFactory) {
+        this.listener = listener;
+        this.metrics = metrics;
+        this.feeds = feeds;
+        this.clock = clock;
+        this.callbackExecutor = callbackExecutor;
+        this.parseExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), parseThreadFactory);
+        this.fetcher = new ForecastFetcher(transport, url, new ForecastFetcher.Listener() {
+
+            @Override
+            public void onForecastDownloaded(byte[] body) {
+                parse(body);
+            }
+
+            @Override
+            public void onForecastUnchanged() {
+                listener.onRefreshUnchanged();
+            }
+
+            @Override
+            public void onForecastFailed(Exception error) {
+                listener.onRefreshFailed(error);
+            }
+        }, clock, metrics);
+        for (int i = 0; i < feeds.size(); i++) {
+            final int feed = i;
+            pendingFeeds.add(new AtomicReference<byte[]>());
+            feedFetchers.add(new ForecastFetcher(transport, feeds.get(i).getUrl(), feeds.get(i).getMaxAge(),
+                    feeds.get(i).getMinCheckInterval(), new ForecastFetcher.Listener() {
+
+                @Override
+                public void onForecastDownloaded(byte[] body) {
+                    merge(feed, body);
+                }
+
+                @Override
+                public void onForecastUnchanged() {
+                }
+
+                @Override
+                public void onForecastFailed(Exception error) {
+                    listener.onFeedFailed(feeds.get(feed), error);
+                }
+            }, clock, metrics));
+        }
+    }
+
+    //Starts the fetch stage for every product that is due; the requests run concurrently on the transport.
+    //Must be called from the callback executor's thread.
+    public void refresh() {
+        ForecastSnapshot current = snapshot.get();
+        fetcher.fetch(current != null ? current.getGrid() : null);
+        SpaceWeather weather = spaceWeather;
+        for (int i = 0; i < feeds.size(); i++) {
+            feedFetchers.get(i).fetch(feeds.get(i).getDataTime(weather));
+        }
+    }
+
+    //Publishes a grid restored from disk, unless a snapshot has already been published
+    public void restore(AuroraGrid grid) {
+        restore(grid, null, null);
+    }
+
+    //Publishes a grid restored from disk together with the validators persisted with it, unless a snapshot has already
+    //been published. The next grid fetch sends the validators, so an unchanged forecast costs a 304 after a restart.
+    //May be called from any thread, so that building the snapshot's index stays off the callback thread; a restore that
+    //completes after shutdown is dropped.
+    public void restore(AuroraGrid grid, final String etag, final String lastModified) {
+        if (closed) {
+            return;
+        }
+        ForecastSnapshot restored = new ForecastSnapshot(grid, spaceWeather, versions.incrementAndGet(), clock.now());
+        if (snapshot.compareAndSet(null, restored)) {
+            callbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    fetcher.restoreValidators(etag, lastModified);
+                }
+            });
+            notifyPublished(restored);
+        }
+    }
+
+    //returns the validators of the last grid response, to be persisted with the grid. Must be called from the callback
+    //executor's thread.
+    public String getForecastEtag() {
+        return fetcher.getEtag();
+    }
+
+    public String getForecastLastModified() {
+        return fetcher.getLastModified();
+    }
+
+    //returns the latest published snapshot, or null if none has been published yet. Safe to call from any thread.
+    public ForecastSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    //Stops the parse thread; pending bodies, and bodies of downloads that complete later, are dropped.
+    //Must be called from the callback executor's thread.
+    public void shutdown() {
+        closed = true;
+        parseExecutor.shutdownNow();
+    }
+
+    private void parse(byte[] body) {
+        if (closed || pendingForecast.getAndSet(body) != null) {
+            return;
+        }
+        parseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                byte[] body = pendingForecast.getAndSet(null);
+                ForecastSnapshot current = snapshot.get();
+                AuroraGrid grid;
+                long started = System.nanoTime();
+                try {
+                    grid = parser.parse(new ByteArrayInputStream(body), current != null ? current.getGrid() : null);
+                    metrics.record(Metrics.PARSE_TIME_US, (System.nanoTime() - started) / 1000);
+                } catch (IOException e) {
+                    metrics.increment(Metrics.PARSE_FAILURES);
+                    notifyFailed(e);
+                    return;
+                }
+                if (grid == null || !publish(grid)) {
+                    notifyUnchanged();
+                }
+            }
+        });
+    }
+
+    //Merges the newest pending body of a feed into the space weather and republishes the current grid with it
+    private void merge(final int feed, byte[] body) {
+        if (closed || pendingFeeds.get(feed).getAndSet(body) != null) {
+            return;
+        }
+        parseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                byte[] body = pendingFeeds.get(feed).getAndSet(null);
+                SpaceWeather merged;
+                try {
+                    merged = feeds.get(feed).merge(spaceWeather, body);
+                } catch (IOException e) {
+                    metrics.increment(Metrics.PARSE_FAILURES);
+                    notifyFeedFailed(feed, e);
+                    return;
+                }
+                if (merged == spaceWeather) {
+                    return;
+                }
+                spaceWeather = merged;
+                while (true) {
+                    ForecastSnapshot current = snapshot.get();
+                    if (current == null) {
+                        //held until the first grid is published
+                        return;
+                    }
+                    ForecastSnapshot published = current.withSpaceWeather(merged, versions.incrementAndGet(), clock.now());
+                    if (snapshot.compareAndSet(current, published)) {
+                        metrics.increment(Metrics.SNAPSHOTS_PUBLISHED);
+                        notifyPublished(published);
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    //Swaps in a snapshot for the grid unless a newer forecast has been published in the meantime. Returns false if it was not published.
+    private boolean publish(AuroraGrid grid) {
+        ForecastSnapshot published = new ForecastSnapshot(grid, spaceWeather, versions.incrementAndGet(), clock.now());
+        while (true) {
+            ForecastSnapshot current = snapshot.get();
+            if (current != null && current.getGrid().getObservationTime() > grid.getObservationTime()) {
+                return false;
+            }
+            if (snapshot.compareAndSet(current, published)) {
+                metrics.increment(Metrics.SNAPSHOTS_PUBLISHED);
+                notifyPublished(published);
+                return true;
+            }
+        }
+    }
+
+    private void notifyPublished(final ForecastSnapshot published) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onSnapshotPublished(published);
+            }
+        });
+    }
+
+    private void notifyUnchanged() {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onRefreshUnchanged();
+            }
+        });
+    }
+
+    private void notifyFailed(final Exception error) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onRefreshFailed(error);
+            }
+        });
+    }
+
+    private void notifyFeedFailed(final int feed, final Exception error) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onFeedFailed(feeds.get(feed), error);
+            }
+        });
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.aurora;
+
+//Immutable view of one published forecast. Instances are swapped atomically by the ForecastPipeline, so a reader that
+//holds a snapshot always sees one complete grid, however many newer forecasts are published meanwhile.
+//The grid's spatial index is built by the constructor, so on the pipeline's parse thread (or the thread restoring a
+//grid from disk) rather than on first query.
+//Newer space weather readings for the same grid are published as a new snapshot sharing the grid and its index.
+public final class ForecastSnapshot {
+
+    private final AuroraGrid grid;
+    private final GridIndex index;
+    private final SpaceWeather spaceWeather;
+    private final long version;
+    private final long publishedAt;
+
+    ForecastSnapshot(AuroraGrid grid, long version, long publishedAt) {
+        this(grid, new GridIndex(grid), SpaceWeather.UNKNOWN, version, publishedAt);
+    }
+
+    ForecastSnapshot(AuroraGrid grid, SpaceWeather spaceWeather, long version, long publishedAt) {
+        this(grid, new GridIndex(grid), spaceWeather, version, publishedAt);
+    }
+
+    private ForecastSnapshot(AuroraGrid grid, GridIndex index, SpaceWeather spaceWeather, long version, long publishedAt) {
+        this.grid = grid;
+        this.index = index;
+        this.spaceWeather = spaceWeather;
+        this.version = version;
+        this.publishedAt = publishedAt;
+    }
+
+    //returns a snapshot of the same grid with other space weather readings, without rebuilding the index
+    ForecastSnapshot withSpaceWeather(SpaceWeather spaceWeather, long version, long publishedAt) {
+        return new ForecastSnapshot(grid, index, spaceWeather, version, publishedAt);
+    }
+
+    public AuroraGrid getGrid() {
+        return grid;
+    }
+
+    //returns the regional mean and best-spot index over the grid
+    public GridIndex getIndex() {
+        return index;
+    }
+
+    //returns the Kp and solar wind readings received with this snapshot, never null
+    public SpaceWeather getSpaceWeather() {
+        return spaceWeather;
+    }
+
+    //Increases by one with every snapshot published in this process
+    public long getVersion() {
+        return version;
+    }
+
+    //Wall clock time the snapshot was published, in epoch milliseconds
+    public long getPublishedAt() {
+        return publishedAt;
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.aurora;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+//Persists the latest AuroraGrid as a small versioned binary file so that a restarted process can serve probabilities
+//straight away, and keep working offline with the last known forecast.
+//
+//Layout (big-endian):
+//  int    magic "AURG"
+//  short  format version
+//  short  encoding (0 = raw cells, 1 = run-length encoded)
+//  long   observation time, epoch ms
+//  long   forecast time, epoch ms
+//  int    payload length in bytes
+//  byte[] payload
+//The run-length encoding is a sequence of (value, run length) pairs, the run length written as an unsigned varint.
+public class ForecastSnapshotStore implements SnapshotStorage {
+
+    static final int MAGIC = 0x41555247;
+    static final short VERSION = 1;
+    static final short ENCODING_RAW = 0;
+    static final short ENCODING_RLE = 1;
+    static final int HEADER_SIZE = 4 + 2 + 2 + 8 + 8 + 4;
+
+    private final File file;
+
+    public ForecastSnapshotStore(File file) {
+        this.file = file;
+    }
+
+    //Writes the grid to a temporary file and renames it over the snapshot, so a crash never leaves a half-written file behind
+    @Override
+    public void save(AuroraGrid grid) throws IOException {
+        byte[] encoded = encodeRuns(grid);
+        boolean raw = encoded == null;
+        int payloadLength = raw ? AuroraGrid.CELLS : encoded.length;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort(raw ? ENCODING_RAW : ENCODING_RLE)
+                .putLong(grid.getObservationTime())
+                .putLong(grid.getForecastTime())
+                .putInt(payloadLength);
+
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(header.array());
+            out.write(raw ? grid.cells() : encoded, 0, payloadLength);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    //Maps the snapshot into memory and decodes it. Returns null if there is no snapshot, or if it is corrupt or from another format version.
+    @Override
+    public AuroraGrid load() {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = in.getChannel();
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return decode(buffer);
+            } finally {
+                in.close();
+            }
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    //deletes the snapshot, if there is one
+    @Override
+    public void clear() {
+        file.delete();
+    }
+
+    private static AuroraGrid decode(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+            return null;
+        }
+        short encoding = buffer.getShort();
+        long observationTime = buffer.getLong();
+        long forecastTime = buffer.getLong();
+        int payloadLength = buffer.getInt();
+        if (payloadLength < 0 || payloadLength > buffer.remaining()) {
+            return null;
+        }
+
+        byte[] cells = new byte[AuroraGrid.CELLS];
+        if (encoding == ENCODING_RAW) {
+            if (payloadLength != AuroraGrid.CELLS) {
+                return null;
+            }
+            buffer.get(cells);
+        } else if (encoding == ENCODING_RLE) {
+            int end = buffer.position() + payloadLength;
+            int cell = 0;
+            while (buffer.position() < end) {
+                byte value = buffer.get();
+                int run = readVarint(buffer);
+                if (run <= 0 || cell + run > AuroraGrid.CELLS) {
+                    return null;
+                }
+                if (value != 0) {
+                    for (int i = cell; i < cell + run; i++) {
+                        cells[i] = value;
+                    }
+                }
+                cell += run;
+            }
+            if (cell != AuroraGrid.CELLS) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        return new AuroraGrid(cells, observationTime, forecastTime);
+    }
+
+    //Run-length encodes the grid, or returns null if the encoding would not be smaller than the raw cells
+    private static byte[] encodeRuns(AuroraGrid grid) {
+        byte[] cells = grid.cells();
+        byte[] out = new byte[AuroraGrid.CELLS];
+        int length = 0;
+        int i = 0;
+        while (i < cells.length) {
+            byte value = cells[i];
+            int run = 1;
+            while (i + run < cells.length && cells[i + run] == value) {
+                run++;
+            }
+            //a pair takes at most 1 + 3 bytes for runs up to the grid size
+            if (length + 4 >= out.length) {
+                return null;
+            }
+            out[length++] = value;
+            length = writeVarint(out, length, run);
+            i += run;
+        }
+        byte[] encoded = new byte[length];
+        System.arraycopy(out, 0, encoded, 0, length);
+        return encoded;
+    }
+
+    private static int writeVarint(byte[] out, int offset, int value) {
+        while ((value & ~0x7f) != 0) {
+            out[offset++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        while (shift < 32) {
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
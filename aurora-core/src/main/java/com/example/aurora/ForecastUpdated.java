@@ -0,0 +1,15 @@
+package com.example.aurora;
+
+//Published when a new forecast snapshot has been published by the pipeline
+public final class ForecastUpdated {
+
+    private final ForecastSnapshot snapshot;
+
+    public ForecastUpdated(ForecastSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public ForecastSnapshot getSnapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.aurora;
+
+import java.util.Arrays;
+
+//Spatial indexes over one AuroraGrid, built once per forecast alongside its ForecastSnapshot.
+//A summed-area table answers regional mean queries in constant time. A max-pyramid, a quadtree of maxima over the grid
+//padded to 512 x 256 cells, answers "highest probability within a radius or box" queries by best-first search:
+//nodes are visited in order of their maximum, so the search stops at the first cell that satisfies the query, after
+//expanding roughly one path per level rather than scanning all 65160 cells. Immutable and thread-safe; plain Java.
+public final class GridIndex {
+
+    static final double EARTH_RADIUS_KM = 6371.0;
+    static final int WIDTH = 512;
+    static final int HEIGHT = 256;
+    //Level 8 is 2 x 1 nodes, each covering a hemisphere of longitudes
+    static final int LEVELS = 9;
+    //Marks pyramid cells that lie outside the grid
+    private static final byte EMPTY = -1;
+
+    //sums[(lon + 1) * (LATITUDES + 1) + lat + 1] is the total of cells [0, lon] x [0, lat], lat counted from -90
+    private final int[] sums = new int[(AuroraGrid.LONGITUDES + 1) * (AuroraGrid.LATITUDES + 1)];
+    //maxima[k][y * width(k) + x] is the highest probability in the 2^k x 2^k block at (x, y) of level k
+    private final byte[][] maxima = new byte[LEVELS][];
+
+    public GridIndex(AuroraGrid grid) {
+        int stride = AuroraGrid.LATITUDES + 1;
+        for (int lon = 0; lon < AuroraGrid.LONGITUDES; lon++) {
+            int column = 0;
+            for (int lat = 0; lat < AuroraGrid.LATITUDES; lat++) {
+                column += grid.cell(lon * AuroraGrid.LATITUDES + lat);
+                sums[(lon + 1) * stride + lat + 1] = sums[lon * stride + lat + 1] + column;
+            }
+        }
+
+        byte[] base = new byte[WIDTH * HEIGHT];
+        Arrays.fill(base, EMPTY);
+        for (int lon = 0; lon < AuroraGrid.LONGITUDES; lon++) {
+            for (int lat = 0; lat < AuroraGrid.LATITUDES; lat++) {
+                base[lat * WIDTH + lon] = (byte) grid.cell(lon * AuroraGrid.LATITUDES + lat);
+            }
+        }
+        maxima[0] = base;
+        for (int k = 1; k < LEVELS; k++) {
+            int width = width(k);
+            int height = height(k);
+            int below = width(k - 1);
+            byte[] previous = maxima[k - 1];
+            byte[] level = new byte[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int max = Math.max(Math.max(previous[2 * y * below + 2 * x], previous[2 * y * below + 2 * x + 1]),
+                            Math.max(previous[(2 * y + 1) * below + 2 * x], previous[(2 * y + 1) * below + 2 * x + 1]));
+                    level[y * width + x] = (byte) max;
+                }
+            }
+            maxima[k] = level;
+        }
+    }
+
+    //Returns the mean probability over the whole-degree box [minLatitude, maxLatitude] x [minLongitude, maxLongitude],
+    //inclusive. The longitude range may cross the antimeridian, in which case minLongitude is greater than maxLongitude.
+    public double meanProbability(int minLatitude, int maxLatitude, int minLongitude, int maxLongitude) {
+        int lat0 = clampLatitude(minLatitude) + 90;
+        int lat1 = clampLatitude(maxLatitude) + 90;
+        if (lat0 > lat1) {
+            return 0;
+        }
+        int lon0 = wrap(minLongitude);
+        int lon1 = wrap(maxLongitude);
+        long total;
+        int columns;
+        if (lon0 <= lon1) {
+            total = sum(lon0, lon1, lat0, lat1);
+            columns = lon1 - lon0 + 1;
+        } else {
+            total = sum(lon0, AuroraGrid.LONGITUDES - 1, lat0, lat1) + sum(0, lon1, lat0, lat1);
+            columns = AuroraGrid.LONGITUDES - lon0 + lon1 + 1;
+        }
+        return (double) total / ((long) columns * (lat1 - lat0 + 1));
+    }
+
+    //Returns the grid index (see AuroraGrid.index) of the cell with the highest probability whose centre lies within
+    //radiusKm of the location, the nearest one among equals, or -1 if no cell centre is that close
+    public int bestWithin(double latitude, double longitude, double radiusKm) {
+        return search(latitude, longitude, radiusKm, 0, 0, 0, 0, false);
+    }
+
+    //Returns the grid index of the cell with the highest probability in the whole-degree box, inclusive, the one nearest
+    //to the given location among equals. The longitude range may cross the antimeridian as in meanProbability.
+    public int bestInBox(double latitude, double longitude, int minLatitude, int maxLatitude, int minLongitude, int maxLongitude) {
+        return search(latitude, longitude, Double.MAX_VALUE,
+                clampLatitude(minLatitude) + 90, clampLatitude(maxLatitude) + 90, wrap(minLongitude), wrap(maxLongitude), true);
+    }
+
+    //returns the latitude of a grid index's cell centre
+    public static int latitudeOf(int index) {
+        return index % AuroraGrid.LATITUDES - 90;
+    }
+
+    //returns the longitude of a grid index's cell centre, in -180-179
+    public static int longitudeOf(int index) {
+        int longitude = index / AuroraGrid.LATITUDES;
+        return longitude >= 180 ? longitude - 360 : longitude;
+    }
+
+    //Returns the great-circle distance between two locations in kilometres
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLat = Math.toRadians(latitude2 - latitude1);
+        double dLon = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(latitude1))
+                * Math.cos(Math.toRadians(latitude2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    //Best-first search over the pyramid. Nodes are ordered by maximum, then by a lower bound on their distance, so the
+    //first cell popped that satisfies the query is the answer. In box mode nodes outside the box are pruned, otherwise
+    //nodes whose lower bound exceeds the radius are.
+    private int search(double latitude, double longitude, double radiusKm,
+                       int lat0, int lat1, int lon0, int lon1, boolean box) {
+        Heap heap = new Heap();
+        int top = LEVELS - 1;
+        for (int y = 0; y < height(top); y++) {
+            for (int x = 0; x < width(top); x++) {
+                offer(heap, top, x, y, latitude, longitude, radiusKm, lat0, lat1, lon0, lon1, box);
+            }
+        }
+        while (heap.size > 0) {
+            long node = heap.pop();
+            int level = (int) (node >>> 32);
+            int x = (int) (node >>> 16) & 0xffff;
+            int y = (int) node & 0xffff;
+            if (level == 0) {
+                return x * AuroraGrid.LATITUDES + y;
+            }
+            for (int dy = 0; dy < 2; dy++) {
+                for (int dx = 0; dx < 2; dx++) {
+                    offer(heap, level - 1, 2 * x + dx, 2 * y + dy, latitude, longitude, radiusKm, lat0, lat1, lon0, lon1, box);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void offer(Heap heap, int level, int x, int y, double latitude, double longitude, double radiusKm,
+                       int lat0, int lat1, int lon0, int lon1, boolean box) {
+        if (x >= width(level) || y >= height(level)) {
+            return;
+        }
+        int max = maxima[level][y * width(level) + x];
+        if (max == EMPTY) {
+            return;
+        }
+        //the node's extent in grid coordinates, trimmed to the grid
+        int minX = x << level;
+        int maxX = Math.min(((x + 1) << level) - 1, AuroraGrid.LONGITUDES - 1);
+        int minY = y << level;
+        int maxY = Math.min(((y + 1) << level) - 1, AuroraGrid.LATITUDES - 1);
+        if (box && (maxY < lat0 || minY > lat1 || !overlaps(minX, maxX, lon0, lon1))) {
+            return;
+        }
+        double bound;
+        if (level == 0) {
+            bound = distanceKm(latitude, longitude, minY - 90, minX);
+            if (bound > radiusKm) {
+                return;
+            }
+        } else {
+            bound = lowerBoundKm(latitude, longitude, minY - 90, maxY - 90, minX, maxX);
+            if (bound > radiusKm) {
+                return;
+            }
+        }
+        //the priority favours a higher maximum, then a smaller distance bound (in metres, capped at 2^27)
+        long distance = Math.min((long) (bound * 1000), (1L << 27) - 1);
+        long priority = (long) max << 27 | ((1L << 27) - 1 - distance);
+        heap.push(priority, (long) level << 32 | (long) x << 16 | y);
+    }
+
+    //A lower bound on the distance from the location to any cell centre in the box: the larger of the latitude gap and
+    //the distance to the nearer bounding meridian, taken as a full great circle
+    static double lowerBoundKm(double latitude, double longitude, int minLatitude, int maxLatitude, int minLongitude, int maxLongitude) {
+        double latitudeGap = latitude < minLatitude ? minLatitude - latitude : latitude > maxLatitude ? latitude - maxLatitude : 0;
+        double bound = Math.toRadians(latitudeGap) * EARTH_RADIUS_KM;
+        double lon = longitude - 360 * Math.floor(longitude / 360);
+        if (lon < minLongitude - 0.5 || lon > maxLongitude + 0.5) {
+            double gap = Math.min(angle(lon, minLongitude), angle(lon, maxLongitude));
+            if (gap < 90) {
+                double crossTrack = Math.asin(Math.cos(Math.toRadians(latitude)) * Math.sin(Math.toRadians(gap)));
+                bound = Math.max(bound, crossTrack * EARTH_RADIUS_KM);
+            }
+        }
+        return bound;
+    }
+
+    //returns the absolute difference between two longitudes in degrees, 0-180
+    private static double angle(double a, double b) {
+        double d = Math.abs(a - b) % 360;
+        return d > 180 ? 360 - d : d;
+    }
+
+    //Returns true if [min, max] overlaps the longitude range [lon0, lon1], which wraps when lon0 > lon1
+    private static boolean overlaps(int min, int max, int lon0, int lon1) {
+        if (lon0 <= lon1) {
+            return max >= lon0 && min <= lon1;
+        }
+        return max >= lon0 || min <= lon1;
+    }
+
+    private long sum(int lon0, int lon1, int lat0, int lat1) {
+        int stride = AuroraGrid.LATITUDES + 1;
+        return sums[(lon1 + 1) * stride + lat1 + 1] - sums[lon0 * stride + lat1 + 1]
+                - sums[(lon1 + 1) * stride + lat0] + sums[lon0 * stride + lat0];
+    }
+
+    private static int width(int level) {
+        return Math.max(1, WIDTH >> level);
+    }
+
+    private static int height(int level) {
+        return Math.max(1, HEIGHT >> level);
+    }
+
+    private static int wrap(int longitude) {
+        longitude %= AuroraGrid.LONGITUDES;
+        return longitude < 0 ? longitude + AuroraGrid.LONGITUDES : longitude;
+    }
+
+    private static int clampLatitude(int latitude) {
+        return Math.max(-90, Math.min(90, latitude));
+    }
+
+    //Binary max-heap of (priority, node) pairs in parallel primitive arrays
+    private static final class Heap {
+        long[] priorities = new long[64];
+        long[] nodes = new long[64];
+        int size = 0;
+
+        void push(long priority, long node) {
+            if (size == priorities.length) {
+                priorities = Arrays.copyOf(priorities, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (priorities[parent] >= priority) {
+                    break;
+                }
+                priorities[i] = priorities[parent];
+                nodes[i] = nodes[parent];
+                i = parent;
+            }
+            priorities[i] = priority;
+            nodes[i] = node;
+        }
+
+        long pop() {
+            long top = nodes[0];
+            size--;
+            long priority = priorities[size];
+            long node = nodes[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && priorities[child + 1] > priorities[child]) {
+                    child++;
+                }
+                if (priorities[child] <= priority) {
+                    break;
+                }
+                priorities[i] = priorities[child];
+                nodes[i] = nodes[child];
+                i = child;
+            }
+            priorities[i] = priority;
+            nodes[i] = node;
+            return top;
+        }
+    }
+}
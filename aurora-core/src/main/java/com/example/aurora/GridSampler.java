@@ -0,0 +1,67 @@
+package com.example.aurora;
+
+//Samples a fixed set of locations from any AuroraGrid. The four surrounding cell indices and bilinear weights of every
+//location are computed once up front, so sampling N locations from a new forecast is 4N array reads and no allocation.
+public final class GridSampler {
+
+    private final int size;
+    private final int[] indices;
+    private final double[] weights;
+
+    public GridSampler(double[] latitudes, double[] longitudes) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Coordinate arrays must have matching lengths");
+        }
+        size = latitudes.length;
+        indices = new int[size * 4];
+        weights = new double[size * 4];
+        for (int i = 0; i < size; i++) {
+            double x = longitudes[i] % AuroraGrid.LONGITUDES;
+            if (x < 0) {
+                x += AuroraGrid.LONGITUDES;
+            }
+            double y = Math.max(0, Math.min(AuroraGrid.LATITUDES - 1, latitudes[i] + 90));
+            int x0 = Math.min((int) x, AuroraGrid.LONGITUDES - 1);
+            int y0 = (int) y;
+            int x1 = x0 + 1 == AuroraGrid.LONGITUDES ? 0 : x0 + 1;
+            int y1 = y0 + 1 == AuroraGrid.LATITUDES ? y0 : y0 + 1;
+            double fx = x - x0;
+            double fy = y - y0;
+
+            int j = i * 4;
+            indices[j] = x0 * AuroraGrid.LATITUDES + y0;
+            indices[j + 1] = x0 * AuroraGrid.LATITUDES + y1;
+            indices[j + 2] = x1 * AuroraGrid.LATITUDES + y0;
+            indices[j + 3] = x1 * AuroraGrid.LATITUDES + y1;
+            weights[j] = (1 - fx) * (1 - fy);
+            weights[j + 1] = (1 - fx) * fy;
+            weights[j + 2] = fx * (1 - fy);
+            weights[j + 3] = fx * fy;
+        }
+    }
+
+    //returns the number of locations sampled
+    public int size() {
+        return size;
+    }
+
+    //returns the j-th precomputed cell index; location i owns entries 4i to 4i + 3
+    int cellIndex(int j) {
+        return indices[j];
+    }
+
+    //returns the bilinear weight of the j-th precomputed cell index
+    double weight(int j) {
+        return weights[j];
+    }
+
+    //Writes the interpolated probability of every location into out, in the order the locations were given
+    public void sample(AuroraGrid grid, double[] out) {
+        for (int i = 0, j = 0; i < size; i++, j += 4) {
+            out[i] = grid.cell(indices[j]) * weights[j]
+                    + grid.cell(indices[j + 1]) * weights[j + 1]
+                    + grid.cell(indices[j + 2]) * weights[j + 2]
+                    + grid.cell(indices[j + 3]) * weights[j + 3];
+        }
+    }
+}
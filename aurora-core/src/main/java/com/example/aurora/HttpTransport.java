@@ -0,0 +1,17 @@
+package com.example.aurora;
+
+//Performs conditional GET requests for the ForecastFetcher. The app implements it with Volley; a plain JVM can use
+//any HTTP client, such as one pointed at a local stub server.
+public interface HttpTransport {
+
+    //Outcome of a request. Both methods are called on the same thread, which the implementation documents.
+    interface Callback {
+        //body is null when the server answered 304 Not Modified; the validators are null when the server sent none
+        void onResponse(byte[] body, String etag, String lastModified);
+
+        void onFailure(Exception error);
+    }
+
+    //Sends a GET for the url, with If-None-Match/If-Modified-Since for whichever validators are not null
+    void get(String url, String etag, String lastModified, Callback callback);
+}
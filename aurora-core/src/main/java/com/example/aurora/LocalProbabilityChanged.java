@@ -0,0 +1,35 @@
+package com.example.aurora;
+
+//Published when the probability, or its trend, at the last reported location changes
+public final class LocalProbabilityChanged {
+
+    private final double latitude;
+    private final double longitude;
+    private final int probability;
+    private final int trend;
+
+    public LocalProbabilityChanged(double latitude, double longitude, int probability, int trend) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.probability = probability;
+        this.trend = trend;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    //returns the probability (0-100) at the location
+    public int getProbability() {
+        return probability;
+    }
+
+    //returns the change in percentage points over the last hour of forecasts
+    public int getTrend() {
+        return trend;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.aurora;
+
+//Decides whether a location update is worth a recomputation. The forecast has one-degree resolution, so a move only
+//matters once it reaches a different grid point. New snapshots are not the gate's business: whoever publishes them
+//recomputes the last location itself, and a snapshot version also changes on every Kp or Bz merge, which leaves the
+//grid untouched. Not thread-safe; plain Java.
+public final class LocationGate {
+
+    private int cell = -1;
+
+    //Returns true, and remembers the location, if the location is nearest a different grid point than the last accepted one
+    public boolean accept(double latitude, double longitude) {
+        int nearest = AuroraGrid.index((int) Math.round(longitude), (int) Math.round(latitude));
+        if (nearest == cell) {
+            return false;
+        }
+        cell = nearest;
+        return true;
+    }
+
+    //forgets the last accepted location, so the next update is always accepted
+    public void reset() {
+        cell = -1;
+    }
+}
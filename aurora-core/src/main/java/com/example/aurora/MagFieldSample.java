@@ -0,0 +1,37 @@
+package com.example.aurora;
+
+//Published at a limited rate while the sensors run, carrying the latest magnetometer reading and compass heading
+public final class MagFieldSample {
+
+    private final long timestampNanos;
+    private final float magneticField;
+    private final double azimuth;
+    private final boolean interference;
+
+    public MagFieldSample(long timestampNanos, float magneticField, double azimuth, boolean interference) {
+        this.timestampNanos = timestampNanos;
+        this.magneticField = magneticField;
+        this.azimuth = azimuth;
+        this.interference = interference;
+    }
+
+    //returns the sensor timestamp of the reading, in nanoseconds
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    //returns the magnitude of the field, in microtesla, which does not depend on how the phone is held
+    public float getMagneticField() {
+        return magneticField;
+    }
+
+    //returns the compass azimuth in degrees clockwise from north (0-360)
+    public double getAzimuth() {
+        return azimuth;
+    }
+
+    //returns true if the recent magnetometer history shows local interference, so the heading may be off
+    public boolean hasInterference() {
+        return interference;
+    }
+}
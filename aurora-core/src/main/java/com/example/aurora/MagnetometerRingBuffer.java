@@ -0,0 +1,151 @@
+package com.example.aurora;
+
+//Fixed-size history of timestamped 3-axis magnetometer samples with streaming statistics over the window.
+//Field magnitude is orientation independent, so its mean, variance and rate of change over the window can flag
+//magnetic interference while the phone is being moved around: nearby metal, electronics or a sensor needing calibration.
+//Storm-time geomagnetic variations are a few to tens of nanotesla per second, far below what a phone magnetometer
+//resolves over the window, so the thresholds only ever catch local interference, which throws the compass off.
+//Every sample is O(1) and allocation free: running sums are updated as samples enter and leave the window, and are
+//rebuilt from the stored samples once per lap of the buffer so floating point drift cannot accumulate.
+//Not thread safe; feed and read it from the sensor thread.
+public class MagnetometerRingBuffer {
+
+    public static final int DEFAULT_CAPACITY = 256;
+    //Standard deviation of the field magnitude over the window, in microtesla, above which the readings count as interfered with
+    static final double INTERFERENCE_STANDARD_DEVIATION = 1.0;
+    //Rate of change of the field magnitude over the window, in microtesla per second, above which the readings count as interfered with
+    static final double INTERFERENCE_RATE = 0.05;
+
+    private final int capacity;
+    private final long[] timestamps;
+    private final float[] x;
+    private final float[] y;
+    private final float[] z;
+    private final double[] magnitudes;
+
+    private int head = 0;
+    private int count = 0;
+    private double sum = 0;
+    private double sumOfSquares = 0;
+
+    public MagnetometerRingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2");
+        }
+        this.capacity = capacity;
+        timestamps = new long[capacity];
+        x = new float[capacity];
+        y = new float[capacity];
+        z = new float[capacity];
+        magnitudes = new double[capacity];
+    }
+
+    public MagnetometerRingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    //Appends a sample, evicting the oldest one once the buffer is full. Timestamps are in nanoseconds, as in SensorEvent.
+    public void add(long timestampNanos, float bx, float by, float bz) {
+        double magnitude = Math.sqrt(bx * bx + by * by + bz * bz);
+        if (count == capacity) {
+            double evicted = magnitudes[head];
+            sum -= evicted;
+            sumOfSquares -= evicted * evicted;
+        } else {
+            count++;
+        }
+        timestamps[head] = timestampNanos;
+        x[head] = bx;
+        y[head] = by;
+        z[head] = bz;
+        magnitudes[head] = magnitude;
+        sum += magnitude;
+        sumOfSquares += magnitude * magnitude;
+
+        head++;
+        if (head == capacity) {
+            head = 0;
+            resum();
+        }
+    }
+
+    private void resum() {
+        sum = 0;
+        sumOfSquares = 0;
+        for (int i = 0; i < count; i++) {
+            sum += magnitudes[i];
+            sumOfSquares += magnitudes[i] * magnitudes[i];
+        }
+    }
+
+    //returns the number of samples in the window
+    public int size() {
+        return count;
+    }
+
+    //empties the window
+    public void clear() {
+        head = 0;
+        count = 0;
+        sum = 0;
+        sumOfSquares = 0;
+    }
+
+    //returns the buffer position of the i-th oldest sample in the window
+    private int position(int i) {
+        int p = head - count + i;
+        return p < 0 ? p + capacity : p;
+    }
+
+    //returns the field magnitude of the newest sample in microtesla, or 0 if there are no samples
+    public double latestMagnitude() {
+        return count == 0 ? 0 : magnitudes[position(count - 1)];
+    }
+
+    //returns the mean field magnitude over the window in microtesla
+    public double meanMagnitude() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    //returns the variance of the field magnitude over the window
+    public double variance() {
+        if (count < 2) {
+            return 0;
+        }
+        double mean = sum / count;
+        return Math.max(0, sumOfSquares / count - mean * mean);
+    }
+
+    //returns the rate of change of the field magnitude across the window, in microtesla per second
+    public double rateOfChange() {
+        if (count < 2) {
+            return 0;
+        }
+        int oldest = position(0);
+        int newest = position(count - 1);
+        long elapsed = timestamps[newest] - timestamps[oldest];
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return (magnitudes[newest] - magnitudes[oldest]) / (elapsed / 1e9);
+    }
+
+    //Returns true once the window is full and the field magnitude is varying more than the sensor noise explains,
+    //meaning local interference rather than the Earth's field
+    public boolean hasInterference() {
+        return count == capacity
+                && (Math.sqrt(variance()) > INTERFERENCE_STANDARD_DEVIATION || Math.abs(rateOfChange()) > INTERFERENCE_RATE);
+    }
+
+    //Copies the i-th oldest sample's axes into out (length 3) and returns its timestamp in nanoseconds
+    public long sample(int i, float[] out) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("Sample " + i + " of " + count);
+        }
+        int p = position(i);
+        out[0] = x[p];
+        out[1] = y[p];
+        out[2] = z[p];
+        return timestamps[p];
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.aurora;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Lock-free counters and latency histograms for the service's hot paths. Recording is a few atomic adds on
+//preallocated arrays and never allocates, so it can sit on the sensor and location paths and be called from any thread.
+//Histograms have fixed power-of-two buckets: bucket b counts values in [2^(b-1), 2^b), bucket 0 counts zero.
+//Plain Java.
+public final class Metrics {
+
+    public static final int FETCHES = 0;
+    public static final int FETCHES_UNCHANGED = 1;
+    public static final int FETCH_FAILURES = 2;
+    public static final int BYTES_DOWNLOADED = 3;
+    public static final int SNAPSHOTS_PUBLISHED = 4;
+    public static final int LOOKUPS = 5;
+    //lookups made before any forecast was available, which return -1
+    public static final int LOOKUP_MISSES = 6;
+    public static final int SENSOR_EVENTS = 7;
+    public static final int WIDGET_PUSHES = 8;
+    public static final int ALERTS = 9;
+    //downloaded grids and feed tables that could not be parsed
+    public static final int PARSE_FAILURES = 10;
+    static final String[] COUNTER_NAMES = {"fetches", "fetchesUnchanged", "fetchFailures", "bytesDownloaded",
+            "snapshotsPublished", "lookups", "lookupMisses", "sensorEvents", "widgetPushes", "alerts", "parseFailures"};
+
+    public static final int FETCH_LATENCY_MS = 0;
+    public static final int PARSE_TIME_US = 1;
+    public static final int LOOKUP_LATENCY_NS = 2;
+    //age of the forecast behind each lookup, from its observation time
+    public static final int SNAPSHOT_AGE_S = 3;
+    static final String[] HISTOGRAM_NAMES = {"fetchLatencyMs", "parseTimeUs", "lookupLatencyNs", "snapshotAgeS"};
+
+    static final int BUCKETS = 64;
+
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTER_NAMES.length);
+    private final AtomicLongArray buckets = new AtomicLongArray(HISTOGRAM_NAMES.length * BUCKETS);
+    private final AtomicLongArray sums = new AtomicLongArray(HISTOGRAM_NAMES.length);
+    private final AtomicLongArray maxima = new AtomicLongArray(HISTOGRAM_NAMES.length);
+
+    public void increment(int counter) {
+        counters.incrementAndGet(counter);
+    }
+
+    public void add(int counter, long amount) {
+        counters.addAndGet(counter, amount);
+    }
+
+    public long get(int counter) {
+        return counters.get(counter);
+    }
+
+    //Records a value in a histogram. Negative values are recorded as zero.
+    public void record(int histogram, long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(histogram * BUCKETS + bucket(value));
+        sums.addAndGet(histogram, value);
+        long max = maxima.get(histogram);
+        while (value > max && !maxima.compareAndSet(histogram, max, value)) {
+            max = maxima.get(histogram);
+        }
+    }
+
+    public long count(int histogram) {
+        long count = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            count += buckets.get(histogram * BUCKETS + b);
+        }
+        return count;
+    }
+
+    public long max(int histogram) {
+        return maxima.get(histogram);
+    }
+
+    public double mean(int histogram) {
+        long count = count(histogram);
+        return count == 0 ? 0 : (double) sums.get(histogram) / count;
+    }
+
+    //Returns an upper bound on the given percentile (0-100), accurate to within a factor of two, or 0 if nothing was recorded
+    public long percentile(int histogram, double percentile) {
+        long count = count(histogram);
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += buckets.get(histogram * BUCKETS + b);
+            if (seen >= Math.max(rank, 1)) {
+                return Math.min(upperBound(b), max(histogram));
+            }
+        }
+        return max(histogram);
+    }
+
+    //Writes every counter and histogram as one JSON object. Counters are read one at a time, so a dump taken while
+    //recording continues is not an atomic snapshot.
+    public void writeJson(Writer out, long now) throws IOException {
+        out.write("{\"time\":" + now + ",\"counters\":{");
+        for (int c = 0; c < COUNTER_NAMES.length; c++) {
+            out.write((c > 0 ? "," : "") + "\"" + COUNTER_NAMES[c] + "\":" + counters.get(c));
+        }
+        out.write("},\"histograms\":{");
+        for (int h = 0; h < HISTOGRAM_NAMES.length; h++) {
+            out.write((h > 0 ? "," : "") + "\"" + HISTOGRAM_NAMES[h] + "\":{\"count\":" + count(h)
+                    + ",\"mean\":" + mean(h) + ",\"p50\":" + percentile(h, 50) + ",\"p90\":" + percentile(h, 90)
+                    + ",\"p99\":" + percentile(h, 99) + ",\"max\":" + max(h) + "}");
+        }
+        out.write("}}\n");
+    }
+
+    static int bucket(long value) {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
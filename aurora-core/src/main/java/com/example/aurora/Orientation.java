@@ -0,0 +1,43 @@
+package com.example.aurora;
+
+//Compass math on raw sensor vectors, following the conventions of SensorManager.getRotationMatrix and getOrientation
+//but without their intermediate matrix. Plain Java and allocation-free.
+public final class Orientation {
+
+    //Below this squared length the accelerometer is taken to be in free fall
+    static final double MIN_GRAVITY_SQUARED = (9.81 / 10) * (9.81 / 10);
+    //Below this length the magnetic field is too close to vertical (or to zero) to give a heading
+    static final double MIN_EAST_LENGTH = 0.1;
+
+    private Orientation() {
+    }
+
+    //Returns the azimuth of the device's y axis in degrees clockwise from magnetic north (0-360), given the gravity
+    //and geomagnetic vectors in device coordinates, or NaN if no heading can be derived from them
+    public static double azimuth(float[] gravity, float[] geomagnetic) {
+        double ax = gravity[0], ay = gravity[1], az = gravity[2];
+        if (ax * ax + ay * ay + az * az < MIN_GRAVITY_SQUARED) {
+            return Double.NaN;
+        }
+        double ex = geomagnetic[0], ey = geomagnetic[1], ez = geomagnetic[2];
+        //east is the cross product of the magnetic field and gravity
+        double hx = ey * az - ez * ay;
+        double hy = ez * ax - ex * az;
+        double hz = ex * ay - ey * ax;
+        double east = Math.sqrt(hx * hx + hy * hy + hz * hz);
+        if (east < MIN_EAST_LENGTH) {
+            return Double.NaN;
+        }
+        hx /= east;
+        hy /= east;
+        hz /= east;
+        double up = Math.sqrt(ax * ax + ay * ay + az * az);
+        ax /= up;
+        ay /= up;
+        az /= up;
+        //north is the cross product of gravity and east; only its y component is needed
+        double my = az * hx - ax * hz;
+        double degrees = Math.toDegrees(Math.atan2(hy, my));
+        return degrees < 0 ? degrees + 360 : degrees;
+    }
+}
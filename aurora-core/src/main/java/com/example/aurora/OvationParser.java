@@ -0,0 +1,298 @@
+package com.example.aurora;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+//Streaming reader for the NOAA OVATION aurora feed. Walks the response body one token at a time and writes each
+//[longitude, latitude, probability] triple straight into a flat byte grid, so no JSON tree is ever built.
+//A parser instance reuses its buffers and is not thread safe.
+public class OvationParser {
+
+    private static final String OBSERVATION_TIME = "Observation Time";
+    private static final String FORECAST_TIME = "Forecast Time";
+    private static final String COORDINATES = "coordinates";
+
+    private final byte[] buffer = new byte[8192];
+    private final StringBuilder text = new StringBuilder(32);
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
+
+    private InputStream in;
+    private int position;
+    private int limit;
+
+    public OvationParser() {
+        timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    //Reads a complete OVATION document from the stream and returns the decoded grid. Cells missing from the feed are left at 0.
+    public AuroraGrid parse(InputStream in) throws IOException {
+        return parse(in, null);
+    }
+
+    //Like parse(InputStream), but returns null as soon as the document's observation and forecast times turn out to match
+    //those of the known grid, without decoding the coordinates. NOAA writes both times ahead of the coordinate array.
+    public AuroraGrid parse(InputStream in, AuroraGrid known) throws IOException {
+        this.in = in;
+        position = 0;
+        limit = 0;
+
+        byte[] cells = new byte[AuroraGrid.CELLS];
+        long observationTime = 0;
+        long forecastTime = 0;
+
+        expect('{');
+        int c = nextToken();
+        if (c == -1) {
+            throw syntaxError(c);
+        }
+        if (c != '}') {
+            position--;
+            while (true) {
+                expect('"');
+                readString();
+                expect(':');
+                if (OBSERVATION_TIME.contentEquals(text)) {
+                    observationTime = readTime();
+                } else if (FORECAST_TIME.contentEquals(text)) {
+                    forecastTime = readTime();
+                } else if (COORDINATES.contentEquals(text)) {
+                    if (isKnown(known, observationTime, forecastTime)) {
+                        this.in = null;
+                        return null;
+                    }
+                    readCoordinates(cells);
+                } else {
+                    skipValue();
+                }
+                c = nextToken();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw syntaxError(c);
+                }
+            }
+        }
+        this.in = null;
+        return new AuroraGrid(cells, observationTime, forecastTime);
+    }
+
+    private static boolean isKnown(AuroraGrid known, long observationTime, long forecastTime) {
+        return known != null && observationTime != 0
+                && known.getObservationTime() == observationTime && known.getForecastTime() == forecastTime;
+    }
+
+    //Reads the coordinates array, storing each probability at its grid cell
+    private void readCoordinates(byte[] cells) throws IOException {
+        expect('[');
+        int c = nextToken();
+        if (c == ']') {
+            return;
+        }
+        if (c == -1) {
+            throw syntaxError(c);
+        }
+        position--;
+        while (true) {
+            expect('[');
+            int longitude = (int) Math.round(readNumber());
+            expect(',');
+            int latitude = (int) Math.round(readNumber());
+            expect(',');
+            int probability = (int) Math.round(readNumber());
+            expect(']');
+
+            if (probability < 0) {
+                probability = 0;
+            } else if (probability > 100) {
+                probability = 100;
+            }
+            cells[AuroraGrid.index(longitude, latitude)] = (byte) probability;
+
+            c = nextToken();
+            if (c == ']') {
+                return;
+            }
+            if (c != ',') {
+                throw syntaxError(c);
+            }
+        }
+    }
+
+    //Reads a string value holding an ISO-8601 UTC timestamp and returns it in epoch milliseconds, or 0 if it cannot be read
+    private long readTime() throws IOException {
+        int c = nextToken();
+        if (c == -1) {
+            throw syntaxError(c);
+        }
+        if (c != '"') {
+            position--;
+            skipValue();
+            return 0;
+        }
+        readString();
+        Date date = timeFormat.parse(text.toString(), new ParsePosition(0));
+        return date == null ? 0 : date.getTime();
+    }
+
+    //Reads a JSON number without allocating
+    private double readNumber() throws IOException {
+        int c = nextToken();
+        boolean negative = false;
+        if (c == '-') {
+            negative = true;
+            c = read();
+        }
+        if (c < '0' || c > '9') {
+            throw syntaxError(c);
+        }
+        double value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            c = read();
+        }
+        if (c == '.') {
+            double scale = 0.1;
+            c = read();
+            while (c >= '0' && c <= '9') {
+                value += (c - '0') * scale;
+                scale /= 10;
+                c = read();
+            }
+        }
+        if (c == 'e' || c == 'E') {
+            c = read();
+            boolean negativeExponent = false;
+            if (c == '-' || c == '+') {
+                negativeExponent = c == '-';
+                c = read();
+            }
+            int exponent = 0;
+            while (c >= '0' && c <= '9') {
+                exponent = exponent * 10 + (c - '0');
+                c = read();
+            }
+            value *= Math.pow(10, negativeExponent ? -exponent : exponent);
+        }
+        if (c != -1) {
+            position--;
+        }
+        return negative ? -value : value;
+    }
+
+    //Reads the remainder of a string whose opening quote has been consumed into the shared text buffer
+    private void readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unterminated string");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'n':
+                        text.append('\n');
+                        break;
+                    case 't':
+                        text.append('\t');
+                        break;
+                    case 'r':
+                        text.append('\r');
+                        break;
+                    case 'b':
+                        text.append('\b');
+                        break;
+                    case 'f':
+                        text.append('\f');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            code = (code << 4) | Character.digit(read(), 16);
+                        }
+                        text.append((char) code);
+                        break;
+                    default:
+                        text.append((char) c);
+                }
+            } else {
+                text.append((char) c);
+            }
+        }
+    }
+
+    //Skips over any JSON value, including nested objects and arrays
+    private void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            int c = nextToken();
+            switch (c) {
+                case -1:
+                    throw new IOException("Unexpected end of document");
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    break;
+                case '"':
+                    readString();
+                    break;
+                case ',':
+                case ':':
+                    break;
+                default:
+                    //literal or number: consume until the next structural character
+                    while (c != -1 && c != ',' && c != '}' && c != ']' && c > ' ') {
+                        c = read();
+                    }
+                    if (c != -1) {
+                        position--;
+                    }
+            }
+        } while (depth > 0);
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = nextToken();
+        if (c != expected) {
+            throw syntaxError(c);
+        }
+    }
+
+    //Returns the next non-whitespace byte, or -1 at the end of the stream
+    private int nextToken() throws IOException {
+        int c = read();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            c = read();
+        }
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    private IOException syntaxError(int c) {
+        return new IOException(c == -1 ? "Unexpected end of document" : "Unexpected character '" + (char) c + "'");
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.aurora;
+
+import java.util.Random;
+
+//Decides when the next forecast fetch should happen.
+//It learns how often NOAA publishes (the cadence between successive Observation Times) and how long after its
+//observation time a forecast becomes available (the lag), and aims each fetch just after the next run should be out.
+//A fetch only shows that a run was out by the time it arrived, and it arrives when this scheduler chose, so the lag is
+//never measured from the arrival alone, which would feed the scheduler's own wait back into it. A run found on the
+//first try nudges the lag below the current estimate; a run that was missed before brackets its publish time between
+//the miss and the fetch that found it.
+//On a metered network the fetch waits for every other run unless the phone is charging. After a failure it backs off
+//exponentially with random jitter, so many devices do not retry in lockstep. Plain Java; time comes from a Clock.
+public class PrefetchScheduler {
+
+    static final long DEFAULT_CADENCE = 5 * 60 * 1000;
+    static final long MIN_CADENCE = 60 * 1000;
+    static final long MAX_CADENCE = 60 * 60 * 1000;
+    static final long DEFAULT_LAG = 2 * 60 * 1000;
+    //Extra wait after the expected publish time, covering jitter in NOAA's publishing
+    static final long PUBLISH_MARGIN = 30 * 1000;
+    //Wait before trying again when the expected run had not been published yet
+    static final long UNCHANGED_RETRY = 60 * 1000;
+    static final long BASE_BACKOFF = 30 * 1000;
+    static final long MAX_BACKOFF = 60 * 60 * 1000;
+    static final int METERED_STRIDE = 2;
+    //Weight of each new measurement in the cadence and lag averages
+    static final double LEARNING_RATE = 0.3;
+
+    private final Clock clock;
+    private final Random random;
+
+    private long lastObservation = 0;
+    private long cadence = DEFAULT_CADENCE;
+    private long lag = DEFAULT_LAG;
+    private int failures = 0;
+    private long lastAttempt = 0;
+    private boolean waitingForRun = false;
+    //time of the last fetch that found no new run since the last forecast, 0 if there was none
+    private long missedAt = 0;
+
+    public PrefetchScheduler(Clock clock, Random random) {
+        this.clock = clock;
+        this.random = random;
+    }
+
+    //Restores state learned by an earlier process
+    public void restore(long lastObservation, long cadence, long lag) {
+        this.lastObservation = lastObservation;
+        this.cadence = clamp(cadence, MIN_CADENCE, MAX_CADENCE);
+        this.lag = clamp(lag, 0, MAX_CADENCE);
+    }
+
+    //Records a newly received forecast, learning the publishing cadence and lag from its observation time
+    public void onForecastReceived(long observationTime) {
+        long now = clock.now();
+        lastAttempt = now;
+        failures = 0;
+        waitingForRun = false;
+        if (observationTime <= lastObservation) {
+            return;
+        }
+        if (lastObservation > 0) {
+            long interval = observationTime - lastObservation;
+            //a gap spanning several runs (the phone was off, say) is not a cadence measurement
+            if (interval <= MAX_CADENCE) {
+                cadence = clamp(average(cadence, interval), MIN_CADENCE, MAX_CADENCE);
+            }
+        }
+        long measuredLag;
+        if (missedAt > observationTime) {
+            //published between the fetch that missed it and this one
+            measuredLag = (missedAt + now) / 2 - observationTime;
+        } else if (lastObservation == 0) {
+            //nothing was aimed for yet, so the arrival is all there is
+            measuredLag = now - observationTime;
+        } else {
+            //out by now, and perhaps well before the time aimed for: probe earlier until a miss brackets the publish time
+            measuredLag = Math.max(0, Math.min(now - observationTime, lag - PUBLISH_MARGIN));
+        }
+        missedAt = 0;
+        if (measuredLag >= 0 && measuredLag <= MAX_CADENCE) {
+            lag = average(lag, measuredLag);
+        }
+        lastObservation = observationTime;
+    }
+
+    //Records a fetch that found no new forecast
+    public void onUnchanged() {
+        lastAttempt = clock.now();
+        missedAt = lastAttempt;
+        failures = 0;
+        waitingForRun = true;
+    }
+
+    //Records a failed fetch
+    public void onFailure() {
+        lastAttempt = clock.now();
+        failures++;
+    }
+
+    //Returns how many milliseconds from now the next fetch should run
+    public long nextFetchDelay(boolean unmetered, boolean charging) {
+        long now = clock.now();
+        if (failures > 0) {
+            long backoff = Math.min(MAX_BACKOFF, BASE_BACKOFF << Math.min(failures - 1, 20));
+            //"equal jitter": wait between half and all of the backoff
+            long jittered = backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+            return Math.max(0, lastAttempt + jittered - now);
+        }
+        if (lastObservation == 0) {
+            return 0;
+        }
+        int stride = unmetered || charging ? 1 : METERED_STRIDE;
+        long expected = lastObservation + cadence * stride + lag + PUBLISH_MARGIN;
+        if (expected > now) {
+            return expected - now;
+        }
+        //the run is overdue: poll gently until it shows up
+        if (waitingForRun) {
+            return Math.max(0, lastAttempt + UNCHANGED_RETRY - now);
+        }
+        return 0;
+    }
+
+    public long getLastObservation() {
+        return lastObservation;
+    }
+
+    public long getCadence() {
+        return cadence;
+    }
+
+    public long getLag() {
+        return lag;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    private static long average(long current, long measured) {
+        return Math.round(current + LEARNING_RATE * (measured - current));
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
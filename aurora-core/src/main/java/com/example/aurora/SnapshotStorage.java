@@ -0,0 +1,14 @@
+package com.example.aurora;
+
+import java.io.IOException;
+
+//Keeps the latest forecast across process restarts. ForecastSnapshotStore implements it with a local file.
+public interface SnapshotStorage {
+
+    void save(AuroraGrid grid) throws IOException;
+
+    //returns the stored grid, or null if there is none or it cannot be read
+    AuroraGrid load();
+
+    void clear();
+}
@@ -0,0 +1,50 @@
+package com.example.aurora;
+
+//Immutable latest readings of the smaller SWPC products that accompany the OVATION grid in a ForecastSnapshot:
+//the planetary Kp index and the north-south component (Bz) of the interplanetary magnetic field.
+//A strongly southward (negative) Bz lets solar wind energy into the magnetosphere, and often precedes a rise in Kp
+//and in the OVATION probabilities. Readings that have not been received yet are NaN, with a time of 0.
+public final class SpaceWeather {
+
+    public static final SpaceWeather UNKNOWN = new SpaceWeather(Double.NaN, 0, Double.NaN, 0);
+
+    private final double kp;
+    private final long kpTime;
+    private final double bz;
+    private final long bzTime;
+
+    public SpaceWeather(double kp, long kpTime, double bz, long bzTime) {
+        this.kp = kp;
+        this.kpTime = kpTime;
+        this.bz = bz;
+        this.bzTime = bzTime;
+    }
+
+    public SpaceWeather withKp(double kp, long time) {
+        return new SpaceWeather(kp, time, bz, bzTime);
+    }
+
+    public SpaceWeather withBz(double bz, long time) {
+        return new SpaceWeather(kp, kpTime, bz, time);
+    }
+
+    //returns the latest planetary Kp index (0-9), or NaN if unknown
+    public double getKp() {
+        return kp;
+    }
+
+    //returns the start of the Kp interval, in epoch milliseconds, or 0 if unknown
+    public long getKpTime() {
+        return kpTime;
+    }
+
+    //returns the latest IMF Bz (GSM) in nanotesla, or NaN if unknown
+    public double getBz() {
+        return bz;
+    }
+
+    //returns the time of the Bz reading, in epoch milliseconds, or 0 if unknown
+    public long getBzTime() {
+        return bzTime;
+    }
+}
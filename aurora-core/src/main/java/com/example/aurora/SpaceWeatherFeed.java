@@ -0,0 +1,93 @@
+package com.example.aurora;
+
+import java.io.IOException;
+
+//One SWPC product that feeds a reading into the SpaceWeather of each ForecastSnapshot, next to the OVATION grid.
+//A feed names its url and its freshness policy: it is only requested again once its latest reading is maxAge old,
+//and then at most every minCheckInterval while the server has nothing newer. New products are added by subclassing
+//this and passing the feed to the ForecastPipeline. merge is called on the pipeline's single parse thread.
+public abstract class SpaceWeatherFeed {
+
+    public static final String KP_URL = "https://services.swpc.noaa.gov/products/noaa-planetary-k-index.json";
+    public static final String SOLAR_WIND_MAG_URL = "https://services.swpc.noaa.gov/products/solar-wind/mag-5-minute.json";
+
+    //Kp is estimated for three hour intervals, so a reading is current until its interval has passed
+    static final long KP_MAX_AGE = 3 * 60 * 60 * 1000;
+    static final long KP_CHECK_INTERVAL = 15 * 60 * 1000;
+    //the real-time solar wind product is updated every minute with five minute averages
+    static final long SOLAR_WIND_MAX_AGE = 5 * 60 * 1000;
+    static final long SOLAR_WIND_CHECK_INTERVAL = 60 * 1000;
+
+    private final String url;
+    private final long maxAge;
+    private final long minCheckInterval;
+
+    protected SpaceWeatherFeed(String url, long maxAge, long minCheckInterval) {
+        this.url = url;
+        this.maxAge = maxAge;
+        this.minCheckInterval = minCheckInterval;
+    }
+
+    //Returns the planetary Kp index feed
+    public static SpaceWeatherFeed kp(String url) {
+        return new SpaceWeatherFeed(url, KP_MAX_AGE, KP_CHECK_INTERVAL) {
+            private final SwpcTableParser parser = new SwpcTableParser();
+
+            @Override
+            public long getDataTime(SpaceWeather weather) {
+                return weather.getKpTime();
+            }
+
+            @Override
+            public SpaceWeather merge(SpaceWeather weather, byte[] body) throws IOException {
+                SwpcTableParser.Reading reading = parser.latest(body, "Kp");
+                if (reading == null || reading.getTime() < weather.getKpTime()) {
+                    return weather;
+                }
+                return weather.withKp(reading.getValue(), reading.getTime());
+            }
+        };
+    }
+
+    //Returns the solar wind magnetic field feed, read for its Bz (GSM) component
+    public static SpaceWeatherFeed solarWindMag(String url) {
+        return new SpaceWeatherFeed(url, SOLAR_WIND_MAX_AGE, SOLAR_WIND_CHECK_INTERVAL) {
+            private final SwpcTableParser parser = new SwpcTableParser();
+
+            @Override
+            public long getDataTime(SpaceWeather weather) {
+                return weather.getBzTime();
+            }
+
+            @Override
+            public SpaceWeather merge(SpaceWeather weather, byte[] body) throws IOException {
+                SwpcTableParser.Reading reading = parser.latest(body, "bz_gsm");
+                if (reading == null || reading.getTime() < weather.getBzTime()) {
+                    return weather;
+                }
+                return weather.withBz(reading.getValue(), reading.getTime());
+            }
+        };
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    //returns how old this feed's reading may get before it is requested again, in milliseconds
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    //returns the least time between two requests for this feed, in milliseconds
+    public long getMinCheckInterval() {
+        return minCheckInterval;
+    }
+
+    //Returns the time of this feed's reading in the given weather, in epoch milliseconds, or 0 if there is none
+    public abstract long getDataTime(SpaceWeather weather);
+
+    //Returns the weather with the newest reading in the downloaded body merged in, or the given weather if the body
+    //holds nothing newer
+    public abstract SpaceWeather merge(SpaceWeather weather, byte[] body) throws IOException;
+}
@@ -0,0 +1,218 @@
+package com.example.aurora;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+//Reads the latest value of one column from a small SWPC "products" table, such as noaa-planetary-k-index.json or
+//solar-wind/mag-5-minute.json. Both formats SWPC uses are understood: an array of rows whose first row holds the column
+//names, and an array of objects keyed by column name. Rows are in time order; rows with a missing value are skipped.
+//These documents are a few kilobytes, so unlike OvationParser this one simply walks the characters of the whole text.
+//Not thread-safe; plain Java.
+public class SwpcTableParser {
+
+    static final String TIME_COLUMN = "time_tag";
+
+    //One reading of a column
+    public static final class Reading {
+        private final long time;
+        private final double value;
+
+        Reading(long time, double value) {
+            this.time = time;
+            this.value = value;
+        }
+
+        //returns the row's time tag, in epoch milliseconds
+        public long getTime() {
+            return time;
+        }
+
+        public double getValue() {
+            return value;
+        }
+    }
+
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+
+    private String text;
+    private int position;
+
+    public SwpcTableParser() {
+        timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    //Returns the reading of the column in the last row that has one, or null if no row does
+    public Reading latest(byte[] body, String column) throws IOException {
+        text = new String(body, StandardCharsets.UTF_8);
+        position = 0;
+        Object document;
+        try {
+            document = value();
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated table");
+        } finally {
+            text = null;
+        }
+        if (!(document instanceof List)) {
+            throw new IOException("Expected a table");
+        }
+        List<?> rows = (List<?>) document;
+        int timeIndex = -1;
+        int valueIndex = -1;
+        Reading latest = null;
+        for (Object row : rows) {
+            Object time;
+            Object value;
+            if (row instanceof List) {
+                List<?> cells = (List<?>) row;
+                if (timeIndex < 0) {
+                    timeIndex = cells.indexOf(TIME_COLUMN);
+                    valueIndex = cells.indexOf(column);
+                    if (timeIndex < 0 || valueIndex < 0) {
+                        throw new IOException("Missing column " + column);
+                    }
+                    continue;
+                }
+                time = timeIndex < cells.size() ? cells.get(timeIndex) : null;
+                value = valueIndex < cells.size() ? cells.get(valueIndex) : null;
+            } else if (row instanceof ObjectRow) {
+                time = ((ObjectRow) row).get(TIME_COLUMN);
+                value = ((ObjectRow) row).get(column);
+            } else {
+                continue;
+            }
+            double number = number(value);
+            long millis = time(time);
+            if (!Double.isNaN(number) && millis != 0) {
+                latest = new Reading(millis, number);
+            }
+        }
+        return latest;
+    }
+
+    //SWPC writes numbers both bare and quoted
+    private static double number(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        if (value instanceof String) {
+            try {
+                return Double.parseDouble((String) value);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private long time(Object value) {
+        if (!(value instanceof String)) {
+            return 0;
+        }
+        Date date = timeFormat.parse(((String) value).replace('T', ' '), new ParsePosition(0));
+        return date != null ? date.getTime() : 0;
+    }
+
+    //Reads one JSON value: a string, a number (as Double), true/false/null (as null), an array or an object
+    private Object value() throws IOException {
+        skipWhitespace();
+        char c = text.charAt(position);
+        if (c == '[') {
+            position++;
+            List<Object> list = new ArrayList<>();
+            skipWhitespace();
+            if (text.charAt(position) == ']') {
+                position++;
+                return list;
+            }
+            while (true) {
+                list.add(value());
+                skipWhitespace();
+                char next = text.charAt(position++);
+                if (next == ']') {
+                    return list;
+                }
+                if (next != ',') {
+                    throw new IOException("Expected , or ] at " + (position - 1));
+                }
+            }
+        }
+        if (c == '{') {
+            position++;
+            ObjectRow object = new ObjectRow();
+            skipWhitespace();
+            if (text.charAt(position) == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                Object key = value();
+                skipWhitespace();
+                if (text.charAt(position++) != ':' || !(key instanceof String)) {
+                    throw new IOException("Expected a key at " + (position - 1));
+                }
+                object.put((String) key, value());
+                skipWhitespace();
+                char next = text.charAt(position++);
+                if (next == '}') {
+                    return object;
+                }
+                if (next != ',') {
+                    throw new IOException("Expected , or } at " + (position - 1));
+                }
+            }
+        }
+        if (c == '"') {
+            int end = text.indexOf('"', position + 1);
+            if (end < 0) {
+                throw new IOException("Unterminated string");
+            }
+            String string = text.substring(position + 1, end);
+            position = end + 1;
+            return string;
+        }
+        int start = position;
+        while (position < text.length() && ",]} \t\r\n".indexOf(text.charAt(position)) < 0) {
+            position++;
+        }
+        String literal = text.substring(start, position);
+        if (literal.equals("null") || literal.equals("true") || literal.equals("false")) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(literal);
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected " + literal + " at " + start);
+        }
+    }
+
+    private void skipWhitespace() {
+        while (Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    //Keys and values of one object row, in parallel lists; rows have only a handful of columns
+    private static final class ObjectRow {
+        private final List<String> keys = new ArrayList<>();
+        private final List<Object> values = new ArrayList<>();
+
+        void put(String key, Object value) {
+            keys.add(key);
+            values.add(value);
+        }
+
+        Object get(String key) {
+            int i = keys.indexOf(key);
+            return i < 0 ? null : values.get(i);
+        }
+    }
+}
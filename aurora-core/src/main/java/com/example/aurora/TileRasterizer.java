@@ -0,0 +1,64 @@
+package com.example.aurora;
+
+//Renders Web Mercator map tiles of an AuroraGrid into ARGB pixel arrays. Plain Java, so it can be benchmarked on a JVM.
+//Each pixel is reprojected to its latitude and longitude for the tile's zoom level, interpolated from the grid and
+//coloured through a 101-entry lookup table. Reuses its projection buffers, so an instance must stay on one thread.
+public class TileRasterizer {
+
+    public static final int TILE_SIZE = 256;
+
+    //Probabilities below this are left fully transparent
+    static final int MIN_VISIBLE_PROBABILITY = 2;
+
+    private static final int[] COLORS = buildColors();
+
+    private final double[] rowLatitudes = new double[TILE_SIZE];
+    private final double[] columnLongitudes = new double[TILE_SIZE];
+
+    //Green through yellow to red, growing more opaque with probability
+    private static int[] buildColors() {
+        int[] colors = new int[101];
+        for (int p = MIN_VISIBLE_PROBABILITY; p <= 100; p++) {
+            double t = p / 100.0;
+            int red = (int) Math.round(255 * Math.min(1, t * 2));
+            int green = (int) Math.round(255 * Math.min(1, 2 - t * 2));
+            int alpha = (int) Math.round(80 + 150 * Math.min(1, t * 2));
+            colors[p] = alpha << 24 | red << 16 | green << 8;
+        }
+        return colors;
+    }
+
+    //returns the ARGB colour used for a probability (0-100)
+    public static int color(int probability) {
+        return COLORS[Math.max(0, Math.min(100, probability))];
+    }
+
+    //Returns true if the tile coordinates are inside the world at the given zoom level
+    public static boolean isValid(int x, int y, int zoom) {
+        int tiles = 1 << zoom;
+        return zoom >= 0 && zoom < 30 && x >= 0 && y >= 0 && x < tiles && y < tiles;
+    }
+
+    //Renders tile (x, y) at the given zoom into pixels (TILE_SIZE * TILE_SIZE, row-major). Returns false if the tile
+    //holds no visible probability at all, in which case the caller can skip encoding it.
+    public boolean rasterize(AuroraGrid grid, int x, int y, int zoom, int[] pixels) {
+        double worldSize = (double) TILE_SIZE * (1L << zoom);
+        for (int i = 0; i < TILE_SIZE; i++) {
+            double mercatorY = Math.PI * (1 - 2 * ((double) y * TILE_SIZE + i + 0.5) / worldSize);
+            rowLatitudes[i] = Math.toDegrees(Math.atan(Math.sinh(mercatorY)));
+            columnLongitudes[i] = ((double) x * TILE_SIZE + i + 0.5) / worldSize * 360 - 180;
+        }
+
+        boolean visible = false;
+        int p = 0;
+        for (int row = 0; row < TILE_SIZE; row++) {
+            double latitude = rowLatitudes[row];
+            for (int column = 0; column < TILE_SIZE; column++) {
+                int color = COLORS[(int) Math.round(grid.probabilityAt(latitude, columnLongitudes[column]))];
+                pixels[p++] = color;
+                visible |= color != 0;
+            }
+        }
+        return visible;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.aurora;
+
+//Scores how worthwhile it is to go out and look for the aurora at a fixed set of locations: the grid probability,
+//scaled by how dark the sky is. Daylight and civil twilight score zero, the sky counts as fully dark once the sun is
+//DARK_ALTITUDE below the horizon, and a bright moon high in the sky takes up to MOON_PENALTY off the score.
+//The sun and moon are placed once per evaluation and every location is then scored in one pass over primitive arrays,
+//like GridSampler. The darkness factors are cached per INTERVAL, so a forecast update within the same interval only
+//resamples the grid. Thread-safe: the cache is published as one immutable object.
+public final class ViewingScorer {
+
+    //Darkness changes slowly, so factors are computed for the middle of each interval and reused throughout it
+    static final long INTERVAL = 10 * 60 * 1000;
+    //The sun is above this altitude during civil twilight, when no aurora can be seen
+    static final double TWILIGHT_ALTITUDE = Math.toRadians(-6);
+    //From the end of nautical twilight the sky is dark enough for all but the faintest aurora
+    static final double DARK_ALTITUDE = Math.toRadians(-12);
+    //A full moon at or above MOON_ALTITUDE takes this fraction off the score
+    static final double MOON_PENALTY = 0.5;
+    static final double MOON_ALTITUDE = Math.toRadians(30);
+
+    private final GridSampler sampler;
+    private final double[] sinLatitudes;
+    private final double[] cosLatitudes;
+    private final double[] longitudes;
+    private volatile Factors cached;
+
+    //Visibility factors of every location for one interval
+    private static final class Factors {
+        final long interval;
+        final double[] visibility;
+
+        Factors(long interval, double[] visibility) {
+            this.interval = interval;
+            this.visibility = visibility;
+        }
+    }
+
+    public ViewingScorer(double[] latitudes, double[] longitudes) {
+        sampler = new GridSampler(latitudes, longitudes);
+        int size = latitudes.length;
+        sinLatitudes = new double[size];
+        cosLatitudes = new double[size];
+        this.longitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            double latitude = Math.toRadians(latitudes[i]);
+            sinLatitudes[i] = Math.sin(latitude);
+            cosLatitudes[i] = Math.cos(latitude);
+            this.longitudes[i] = Math.toRadians(longitudes[i]);
+        }
+    }
+
+    //returns the number of locations scored
+    public int size() {
+        return sinLatitudes.length;
+    }
+
+    //Writes the interpolated probability of every location into probabilities and its viewing score (0-100) at the
+    //given time into scores, in the order the locations were given
+    public void score(AuroraGrid grid, long time, double[] probabilities, double[] scores) {
+        sampler.sample(grid, probabilities);
+        double[] visibility = factors(time).visibility;
+        for (int i = 0; i < visibility.length; i++) {
+            scores[i] = probabilities[i] * visibility[i];
+        }
+    }
+
+    //Returns how much of the probability at the location at the given position can be seen at the given time, 0 to 1
+    public double visibility(int index, long time) {
+        return factors(time).visibility[index];
+    }
+
+    private Factors factors(long time) {
+        long interval = Math.floorDiv(time, INTERVAL);
+        Factors factors = cached;
+        if (factors == null || factors.interval != interval) {
+            factors = new Factors(interval, compute(interval * INTERVAL + INTERVAL / 2));
+            cached = factors;
+        }
+        return factors;
+    }
+
+    private double[] compute(long time) {
+        double[] sun = new double[3];
+        double[] moon = new double[3];
+        Ephemeris.sun(time, sun);
+        Ephemeris.moon(time, moon);
+        double siderealTime = Ephemeris.siderealTime(time);
+        double[] visibility = new double[sinLatitudes.length];
+        for (int i = 0; i < visibility.length; i++) {
+            double sunAltitude = Ephemeris.altitude(sun[0], sun[1], sinLatitudes[i], cosLatitudes[i], longitudes[i], siderealTime);
+            double darkness = clamp((TWILIGHT_ALTITUDE - sunAltitude) / (TWILIGHT_ALTITUDE - DARK_ALTITUDE));
+            if (darkness == 0) {
+                continue;
+            }
+            double moonAltitude = Ephemeris.altitude(moon[0], moon[1], sinLatitudes[i], cosLatitudes[i], longitudes[i], siderealTime);
+            double moonlight = moon[2] * clamp(moonAltitude / MOON_ALTITUDE);
+            visibility[i] = darkness * (1 - MOON_PENALTY * moonlight);
+        }
+        return visibility;
+    }
+
+    private static double clamp(double value) {
+        return Math.max(0, Math.min(1, value));
+    }
+}
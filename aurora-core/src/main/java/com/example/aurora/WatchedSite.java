@@ -0,0 +1,35 @@
+package com.example.aurora;
+
+//A named location on the watchlist, such as a favourite dark-sky site
+public final class WatchedSite {
+
+    private final String name;
+    private final double latitude;
+    private final double longitude;
+
+    public WatchedSite(String name, double latitude, double longitude) {
+        if (name.indexOf('\t') >= 0 || name.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Site names cannot contain tabs or line breaks");
+        }
+        this.name = name;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    //returns the id of the alert rule that watches this site
+    public String getAlertRuleId() {
+        return "site:" + name;
+    }
+}
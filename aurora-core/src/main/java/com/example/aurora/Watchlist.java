@@ -0,0 +1,105 @@
+package com.example.aurora;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//Immutable list of watched sites together with the ViewingScorer for their locations.
+//Adding or removing a site returns a new Watchlist, so a published list can be sampled from any thread.
+public final class Watchlist {
+
+    public static final Watchlist EMPTY = new Watchlist(Collections.<WatchedSite>emptyList());
+
+    private final List<WatchedSite> sites;
+    private final ViewingScorer scorer;
+
+    private Watchlist(List<WatchedSite> sites) {
+        this.sites = Collections.unmodifiableList(sites);
+        double[] latitudes = new double[sites.size()];
+        double[] longitudes = new double[sites.size()];
+        for (int i = 0; i < sites.size(); i++) {
+            latitudes[i] = sites.get(i).getLatitude();
+            longitudes[i] = sites.get(i).getLongitude();
+        }
+        scorer = new ViewingScorer(latitudes, longitudes);
+    }
+
+    //returns a watchlist with the site added, replacing any site with the same name
+    public Watchlist with(WatchedSite site) {
+        List<WatchedSite> copy = new ArrayList<>(sites);
+        int i = indexOf(site.getName());
+        if (i >= 0) {
+            copy.set(i, site);
+        } else {
+            copy.add(site);
+        }
+        return new Watchlist(copy);
+    }
+
+    //returns a watchlist without the named site
+    public Watchlist without(String name) {
+        int i = indexOf(name);
+        if (i < 0) {
+            return this;
+        }
+        List<WatchedSite> copy = new ArrayList<>(sites);
+        copy.remove(i);
+        return new Watchlist(copy);
+    }
+
+    public List<WatchedSite> getSites() {
+        return sites;
+    }
+
+    public int size() {
+        return sites.size();
+    }
+
+    //Samples and scores every site from the grid in one pass, for the given time
+    public WatchlistResult sample(ForecastSnapshot snapshot, long time) {
+        double[] probabilities = new double[sites.size()];
+        double[] scores = new double[sites.size()];
+        scorer.score(snapshot.getGrid(), time, probabilities, scores);
+        return new WatchlistResult(sites, probabilities, scores, snapshot.getVersion());
+    }
+
+    //Serialises the sites one per line as name, latitude and longitude separated by tabs
+    public String encode() {
+        StringBuilder builder = new StringBuilder();
+        for (WatchedSite site : sites) {
+            builder.append(site.getName()).append('\t')
+                    .append(site.getLatitude()).append('\t')
+                    .append(site.getLongitude()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    //Reads a watchlist written by encode(), skipping any malformed lines
+    public static Watchlist decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return EMPTY;
+        }
+        List<WatchedSite> sites = new ArrayList<>();
+        for (String line : encoded.split("\n")) {
+            String[] fields = line.split("\t");
+            if (fields.length != 3) {
+                continue;
+            }
+            try {
+                sites.add(new WatchedSite(fields[0], Double.parseDouble(fields[1]), Double.parseDouble(fields[2])));
+            } catch (NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        return new Watchlist(sites);
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < sites.size(); i++) {
+            if (sites.get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
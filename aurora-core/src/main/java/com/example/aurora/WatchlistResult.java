@@ -0,0 +1,55 @@
+package com.example.aurora;
+
+import java.util.List;
+
+//Immutable probabilities and viewing scores of every watched site for one forecast snapshot, in watchlist order
+public final class WatchlistResult {
+
+    public static final WatchlistResult EMPTY = new WatchlistResult(Watchlist.EMPTY.getSites(), new double[0], new double[0], 0);
+
+    private final List<WatchedSite> sites;
+    private final double[] probabilities;
+    private final double[] scores;
+    private final long snapshotVersion;
+
+    WatchlistResult(List<WatchedSite> sites, double[] probabilities, double[] scores, long snapshotVersion) {
+        this.sites = sites;
+        this.probabilities = probabilities;
+        this.scores = scores;
+        this.snapshotVersion = snapshotVersion;
+    }
+
+    public int size() {
+        return probabilities.length;
+    }
+
+    public WatchedSite getSite(int index) {
+        return sites.get(index);
+    }
+
+    //returns the interpolated probability (0-100) of the site at the given position
+    public double getProbability(int index) {
+        return probabilities[index];
+    }
+
+    //returns the viewing score (0-100) of the site at the given position, the probability scaled by how dark the sky is
+    public double getScore(int index) {
+        return scores[index];
+    }
+
+    //returns the position of the site with the highest probability, or -1 if the result is empty
+    public int best() {
+        int best = -1;
+        for (int i = 0; i < probabilities.length; i++) {
+            if (best < 0 || probabilities[i] > probabilities[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    //returns the version of the forecast snapshot the probabilities were sampled from
+    public long getSnapshotVersion() {
+        return snapshotVersion;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.aurora;
+
+//Published when the probabilities or viewing scores of the watched sites change: on a new forecast, when the watchlist
+//is edited, and as the darkness at the sites changes between forecasts
+public final class WatchlistUpdated {
+
+    private final WatchlistResult result;
+
+    public WatchlistUpdated(WatchlistResult result) {
+        this.result = result;
+    }
+
+    public WatchlistResult getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.aurora;
+
+//Keeps the home screen widget up to date with as little binder traffic as possible.
+//Triggers (alarm ticks, new forecasts, location changes) are coalesced into one refresh per window, the widget is only
+//pushed when its text actually changed, and the next alarm is pushed further out while aurora activity stays low.
+//Drawing the widget and running the timer are left to the Display and Timer, so the replay harness runs the same
+//engine. Must be used from a single thread, the main thread on the phone.
+public class WidgetRefreshEngine {
+
+    //Supplies the current state the widget should display
+    public interface StateProvider {
+        String getWidgetText();
+
+        //returns the probability the refresh interval is based on, or -1 if it is not known
+        int getDisplayedProbability();
+    }
+
+    //Draws the text on the widget
+    public interface Display {
+        void push(String text);
+    }
+
+    //Runs a task after a delay on the engine's thread
+    public interface Timer {
+        void postDelayed(Runnable task, long delayMillis);
+
+        //drops the task if it has not run yet
+        void cancel(Runnable task);
+    }
+
+    static final long COALESCE_WINDOW = 500;
+    static final long BASE_INTERVAL = 10 * 60 * 1000;
+    static final long MAX_INTERVAL = 60 * 60 * 1000;
+    //Below this probability each quiet tick doubles the refresh interval, up to MAX_INTERVAL
+    static final int ACTIVE_PROBABILITY = 10;
+    private static final int MAX_QUIET_TICKS = 3;
+
+    private final StateProvider provider;
+    private final Display display;
+    private final Timer timer;
+    private final Metrics metrics;
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            pending = false;
+            flush();
+        }
+    };
+
+    private boolean pending = false;
+    private String pushedText;
+    private int quietTicks = 0;
+
+    public WidgetRefreshEngine(StateProvider provider, Display display, Timer timer, Metrics metrics) {
+        this.provider = provider;
+        this.display = display;
+        this.timer = timer;
+        this.metrics = metrics;
+    }
+
+    //Requests a widget refresh. Any further requests within the coalescing window are folded into the same refresh.
+    public void requestRefresh() {
+        if (!pending) {
+            pending = true;
+            timer.postDelayed(flush, COALESCE_WINDOW);
+        }
+    }
+
+    //Handles an alarm tick: refreshes the widget and returns the delay until the next tick according to current activity
+    public long onAlarm() {
+        requestRefresh();
+        return nextInterval(provider.getDisplayedProbability());
+    }
+
+    //Runs any pending refresh now instead of at the end of its window, since the timer stops with the engine's owner.
+    //A background fetch ends soon after its forecast is published, so dropping the refresh would leave the widget stale.
+    public void stop() {
+        if (pending) {
+            timer.cancel(flush);
+            pending = false;
+            flush();
+        }
+    }
+
+    //Pushes the widget state if it differs from what was last pushed
+    private void flush() {
+        String text = provider.getWidgetText();
+        if (text.equals(pushedText)) {
+            return;
+        }
+        display.push(text);
+        pushedText = text;
+        metrics.increment(Metrics.WIDGET_PUSHES);
+    }
+
+    //returns the delay until the next alarm tick, backing off while probability is low or unknown
+    long nextInterval(int probability) {
+        if (probability >= ACTIVE_PROBABILITY) {
+            quietTicks = 0;
+            return BASE_INTERVAL;
+        }
+        if (quietTicks < MAX_QUIET_TICKS) {
+            quietTicks++;
+        }
+        return Math.min(BASE_INTERVAL << quietTicks, MAX_INTERVAL);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.aurora;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AlertEngineTest {
+
+    //2024-12-30T22:00:00Z: polar night in Tromso, a day before new moon, so the viewing score equals the probability
+    static final long NIGHT = 1735596000000L;
+    //2024-06-21T12:00:00Z: midnight sun
+    static final long NOON = 1718971200000L;
+    static final long MINUTE = 60 * 1000;
+    static final double LATITUDE = 69.65;
+    static final double LONGITUDE = 18.96;
+
+    private AlertEngine engine;
+    private final List<String> alerts = new ArrayList<>();
+    private final AlertEngine.Listener listener = new AlertEngine.Listener() {
+        @Override
+        public void onAlert(AlertRule rule, int score) {
+            alerts.add(rule.getId() + " " + score);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        engine = new AlertEngine();
+        engine.setRule(new AlertRule("tromso", LATITUDE, LONGITUDE, 10, 5, 60 * MINUTE));
+    }
+
+    @Test
+    public void firesOnceAboveTheRiseThreshold() {
+        engine.evaluate(grid(10), NIGHT, listener);
+        assertEquals(0, alerts.size());
+        engine.evaluate(grid(11), NIGHT + MINUTE, listener);
+        engine.evaluate(grid(12), NIGHT + 2 * MINUTE, listener);
+        assertEquals(Arrays.asList("tromso 11"), alerts);
+        assertTrue(engine.isRaised(0));
+    }
+
+    @Test
+    public void reArmsOnlyBelowTheFallThreshold() {
+        engine.evaluate(grid(20), NIGHT, listener);
+        engine.evaluate(grid(6), NIGHT + 90 * MINUTE, listener);
+        engine.evaluate(grid(20), NIGHT + 100 * MINUTE, listener);
+        assertEquals(1, alerts.size());
+        engine.evaluate(grid(4), NIGHT + 110 * MINUTE, listener);
+        assertFalse(engine.isRaised(0));
+        engine.evaluate(grid(20), NIGHT + 120 * MINUTE, listener);
+        assertEquals(2, alerts.size());
+    }
+
+    @Test
+    public void waitsOutTheCooldown() {
+        engine.evaluate(grid(20), NIGHT, listener);
+        engine.evaluate(grid(0), NIGHT + MINUTE, listener);
+        engine.evaluate(grid(20), NIGHT + 30 * MINUTE, listener);
+        assertEquals(1, alerts.size());
+        engine.evaluate(grid(20), NIGHT + 61 * MINUTE, listener);
+        assertEquals(2, alerts.size());
+    }
+
+    @Test
+    public void realertsWhileRaisedOnlyAfterAnEscalation() {
+        engine.evaluate(grid(20), NIGHT, listener);
+        engine.evaluate(grid(20 + AlertEngine.ESCALATION_STEP - 1), NIGHT + 61 * MINUTE, listener);
+        assertEquals(1, alerts.size());
+        engine.evaluate(grid(20 + AlertEngine.ESCALATION_STEP), NIGHT + 62 * MINUTE, listener);
+        assertEquals(Arrays.asList("tromso 20", "tromso 30"), alerts);
+    }
+
+    @Test
+    public void doesNotAlertInDaylight() {
+        engine.evaluate(grid(90), NOON, listener);
+        assertEquals(0, alerts.size());
+        assertFalse(engine.isRaised(0));
+    }
+
+    @Test
+    public void aRuleAddedAfterARemovalStartsUnraised() {
+        engine.setRule(new AlertRule("abisko", 68.35, 18.83, 10, 5, 60 * MINUTE));
+        engine.evaluate(grid(20), NIGHT, listener);
+        assertTrue(engine.isRaised(1));
+
+        engine.removeRule("abisko");
+        engine.setRule(new AlertRule("narvik", 68.44, 17.43, 10, 5, 60 * MINUTE));
+        assertFalse(engine.isRaised(1));
+        assertEquals(0, engine.getLastAlertScore(1));
+        engine.evaluate(grid(20), NIGHT + MINUTE, listener);
+        assertEquals(Arrays.asList("tromso 20", "abisko 20", "narvik 20"), alerts);
+    }
+
+    static AuroraGrid grid(int probability) {
+        byte[] cells = new byte[AuroraGrid.CELLS];
+        Arrays.fill(cells, (byte) probability);
+        return new AuroraGrid(cells, 0, 0);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.aurora;
+
+//Clock for tests: stands still until a test moves it
+final class FakeClock implements Clock {
+
+    private long now;
+
+    FakeClock(long now) {
+        this.now = now;
+    }
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    void advance(long millis) {
+        now += millis;
+    }
+
+    void set(long now) {
+        this.now = now;
+    }
+}
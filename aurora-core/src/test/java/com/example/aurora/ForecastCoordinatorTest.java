@@ -0,0 +1,164 @@
+package com.example.aurora;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ForecastCoordinatorTest {
+
+    private static final double LATITUDE = 69.65;
+    private static final double LONGITUDE = 18.96;
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final List<String> calls = new ArrayList<>();
+    private final ForecastCoordinator.Host host = new ForecastCoordinator.Host() {
+        @Override
+        public void onNewGrid(AuroraGrid grid) {
+            calls.add("grid " + grid.getObservationTime());
+        }
+
+        @Override
+        public void requestTrend(double longitude, double latitude, int cell) {
+            calls.add("trend " + cell);
+        }
+
+        @Override
+        public void onAlertRuleAdded(AlertRule rule) {
+            calls.add("rule " + rule.getId());
+        }
+
+        @Override
+        public void onAlert(AlertRule rule, int score) {
+            calls.add("alert " + rule.getId());
+        }
+
+        @Override
+        public void onAlertsEvaluated() {
+            calls.add("evaluated");
+        }
+    };
+
+    private FakeClock clock;
+    private Metrics metrics;
+    private EventBus eventBus;
+    private ForecastPipeline pipeline;
+    private ForecastCoordinator coordinator;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock(AlertEngineTest.NIGHT);
+        metrics = new Metrics();
+        eventBus = new EventBus();
+        HttpTransport silent = new HttpTransport() {
+            @Override
+            public void get(String url, String etag, String lastModified, Callback callback) {
+            }
+        };
+        pipeline = new ForecastPipeline(silent, "http://localhost/ovation", Collections.<SpaceWeatherFeed>emptyList(),
+                new ForecastPipeline.Listener() {
+                    @Override
+                    public void onSnapshotPublished(ForecastSnapshot snapshot) {
+                        coordinator.onSnapshotPublished(snapshot);
+                    }
+
+                    @Override
+                    public void onRefreshUnchanged() {
+                    }
+
+                    @Override
+                    public void onRefreshFailed(Exception error) {
+                    }
+
+                    @Override
+                    public void onFeedFailed(SpaceWeatherFeed feed, Exception error) {
+                    }
+                }, metrics, clock, DIRECT, Executors.defaultThreadFactory());
+        coordinator = new ForecastCoordinator(pipeline, eventBus, metrics, clock, host);
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void aLocationReportedBeforeTheFirstGridIsLookedUpWhenItArrives() {
+        assertEquals(-1, coordinator.findProbability(LONGITUDE, LATITUDE));
+        assertEquals(1, metrics.get(Metrics.LOOKUP_MISSES));
+
+        pipeline.restore(AlertEngineTest.grid(30));
+        assertEquals(30, eventBus.latest(LocalProbabilityChanged.class).getProbability());
+        int cell = AuroraGrid.index(19, 70);
+        assertEquals(Arrays.asList("rule current", "grid 0", "trend " + cell, "alert current", "evaluated"), calls);
+    }
+
+    @Test
+    public void aWeatherOnlySnapshotLeavesTheGridDerivedStateAlone() {
+        coordinator.findProbability(LONGITUDE, LATITUDE);
+        pipeline.restore(AlertEngineTest.grid(30));
+        calls.clear();
+
+        ForecastSnapshot weather = pipeline.getSnapshot().withSpaceWeather(SpaceWeather.UNKNOWN.withKp(5, 0), 2, clock.now());
+        coordinator.onSnapshotPublished(weather);
+        assertEquals(Collections.<String>emptyList(), calls);
+        assertSame(weather, eventBus.latest(ForecastUpdated.class).getSnapshot());
+    }
+
+    @Test
+    public void aTrendIsPublishedOnlyForTheCurrentCell() {
+        pipeline.restore(AlertEngineTest.grid(30));
+        coordinator.findProbability(LONGITUDE, LATITUDE);
+        int tromso = AuroraGrid.index(19, 70);
+        coordinator.findProbability(10.75, 59.91);
+
+        coordinator.publishTrend(tromso, 5);
+        assertEquals(0, eventBus.latest(LocalProbabilityChanged.class).getTrend());
+        coordinator.publishTrend(AuroraGrid.index(11, 60), 5);
+        assertEquals(5, eventBus.latest(LocalProbabilityChanged.class).getTrend());
+    }
+
+    @Test
+    public void watchedSitesGetAlertRulesAndSamples() {
+        pipeline.restore(AlertEngineTest.grid(30));
+        coordinator.addWatchedSite(new WatchedSite("Abisko", 68.35, 18.83));
+        assertEquals(1, coordinator.getWatchlistResult().size());
+        assertEquals(30, coordinator.getWatchlistResult().getProbability(0), 0.5);
+        String rule = new WatchedSite("Abisko", 0, 0).getAlertRuleId();
+        assertEquals(rule, coordinator.getAlertEngine().getRule(0).getId());
+
+        coordinator.removeWatchedSite("Abisko");
+        assertEquals(0, coordinator.getWatchlistResult().size());
+        assertEquals(0, coordinator.getAlertEngine().size());
+    }
+
+    @Test
+    public void watchedSitesAreScoredAgainAsTheDarknessChanges() {
+        pipeline.restore(AlertEngineTest.grid(30));
+        coordinator.addWatchedSite(new WatchedSite("Abisko", 68.35, 18.83));
+        double night = eventBus.latest(WatchlistUpdated.class).getResult().getScore(0);
+
+        //the midnight sun: the same forecast is worth nothing for viewing
+        clock.set(AlertEngineTest.NOON);
+        coordinator.rescoreWatchlist();
+        WatchlistResult day = eventBus.latest(WatchlistUpdated.class).getResult();
+        assertSame(day, coordinator.getWatchlistResult());
+        assertEquals(30, day.getProbability(0), 0.5);
+        assertTrue(day.getScore(0) < night);
+    }
+}
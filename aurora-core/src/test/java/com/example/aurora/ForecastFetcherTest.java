@@ -0,0 +1,159 @@
+package com.example.aurora;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ForecastFetcherTest {
+
+    private static final long NOW = 1638370800000L;
+    private static final long MINUTE = 60 * 1000;
+
+    //Records every request; the test answers them through the stored callbacks
+    private static final class StubTransport implements HttpTransport {
+        final List<String[]> requests = new ArrayList<>();
+        final List<Callback> callbacks = new ArrayList<>();
+
+        @Override
+        public void get(String url, String etag, String lastModified, Callback callback) {
+            requests.add(new String[]{url, etag, lastModified});
+            callbacks.add(callback);
+        }
+
+        Callback last() {
+            return callbacks.get(callbacks.size() - 1);
+        }
+    }
+
+    private StubTransport transport;
+    private FakeClock clock;
+    private Metrics metrics;
+    private final List<String> outcomes = new ArrayList<>();
+
+    private final ForecastFetcher.Listener listener = new ForecastFetcher.Listener() {
+        @Override
+        public void onForecastDownloaded(byte[] body) {
+            outcomes.add("downloaded " + body.length);
+        }
+
+        @Override
+        public void onForecastUnchanged() {
+            outcomes.add("unchanged");
+        }
+
+        @Override
+        public void onForecastFailed(Exception error) {
+            outcomes.add("failed");
+        }
+    };
+
+    @Before
+    public void setUp() {
+        transport = new StubTransport();
+        clock = new FakeClock(NOW);
+        metrics = new Metrics();
+    }
+
+    @Test
+    public void firstFetchSendsNoValidators() {
+        ForecastFetcher fetcher = new ForecastFetcher(transport, "http://stub/ovation", listener, clock, metrics);
+        fetcher.fetch(null);
+        assertEquals(1, transport.requests.size());
+        assertArrayEquals(new String[]{"http://stub/ovation", null, null}, transport.requests.get(0));
+    }
+
+    @Test
+    public void staleDataIsRequestedWithTheLastValidators() {
+        ForecastFetcher fetcher = new ForecastFetcher(transport, "url", listener, clock, metrics);
+        fetcher.fetch(null);
+        transport.last().onResponse(new byte[10], "\"a\"", "Wed, 01 Dec 2021 15:00:00 GMT");
+
+        clock.advance(10 * MINUTE);
+        fetcher.fetch(grid(NOW));
+        assertEquals(2, transport.requests.size());
+        assertArrayEquals(new String[]{"url", "\"a\"", "Wed, 01 Dec 2021 15:00:00 GMT"}, transport.requests.get(1));
+    }
+
+    @Test
+    public void notModifiedIsReportedAsUnchanged() {
+        ForecastFetcher fetcher = new ForecastFetcher(transport, "url", listener, clock, metrics);
+        fetcher.fetch(null);
+        transport.last().onResponse(new byte[10], "\"a\"", null);
+        clock.advance(10 * MINUTE);
+        fetcher.fetch(grid(NOW));
+        transport.last().onResponse(null, null, null);
+
+        assertEquals("downloaded 10", outcomes.get(0));
+        assertEquals("unchanged", outcomes.get(1));
+        assertEquals(2, metrics.get(Metrics.FETCHES));
+        assertEquals(1, metrics.get(Metrics.FETCHES_UNCHANGED));
+        assertEquals(10, metrics.get(Metrics.BYTES_DOWNLOADED));
+        //a 304 without validators keeps the ones from the last full response
+        fetcher.fetch(grid(NOW));
+        assertEquals("\"a\"", transport.requests.get(2)[1]);
+    }
+
+    @Test
+    public void freshDataIsNotRequested() {
+        ForecastFetcher fetcher = new ForecastFetcher(transport, "url", listener, clock, metrics);
+        clock.advance(ForecastFetcher.MIN_REFRESH_INTERVAL - 1);
+        fetcher.fetch(grid(NOW));
+        assertEquals(0, transport.requests.size());
+        assertEquals("unchanged", outcomes.get(0));
+
+        clock.advance(1);
+        fetcher.fetch(grid(NOW));
+        assertEquals(1, transport.requests.size());
+    }
+
+    @Test
+    public void staleDataIsCheckedAtMostEveryCheckInterval() {
+        ForecastFetcher fetcher = new ForecastFetcher(transport, "url", 5 * MINUTE, 15 * MINUTE, listener, clock, metrics);
+        long dataTime = NOW - 10 * MINUTE;
+        fetcher.fetch(dataTime);
+        transport.last().onResponse(null, null, null);
+
+        clock.advance(14 * MINUTE);
+        fetcher.fetch(dataTime);
+        assertEquals(1, transport.requests.size());
+        clock.advance(MINUTE);
+        fetcher.fetch(dataTime);
+        assertEquals(2, transport.requests.size());
+    }
+
+    @Test
+    public void onlyOneRequestIsInFlight() {
+        ForecastFetcher fetcher = new ForecastFetcher(transport, "url", listener, clock, metrics);
+        fetcher.fetch(null);
+        fetcher.fetch(null);
+        assertEquals(1, transport.requests.size());
+        transport.last().onFailure(new Exception("503"));
+        assertEquals("failed", outcomes.get(0));
+        assertEquals(1, metrics.get(Metrics.FETCH_FAILURES));
+        fetcher.fetch(null);
+        assertEquals(2, transport.requests.size());
+        assertNull(transport.requests.get(1)[1]);
+    }
+
+    @Test
+    public void restoredValidatorsAreSentUntilAResponseReplacesThem() {
+        ForecastFetcher fetcher = new ForecastFetcher(transport, "url", listener, clock, metrics);
+        fetcher.restoreValidators("\"a\"", null);
+        fetcher.fetch(grid(NOW - 10 * MINUTE));
+        assertArrayEquals(new String[]{"url", "\"a\"", null}, transport.requests.get(0));
+        transport.last().onResponse(new byte[10], "\"b\"", null);
+
+        fetcher.restoreValidators("\"a\"", null);
+        assertEquals("\"b\"", fetcher.getEtag());
+    }
+
+    private static AuroraGrid grid(long observationTime) {
+        return new AuroraGrid(new byte[AuroraGrid.CELLS], observationTime, observationTime + 30 * MINUTE);
+    }
+}
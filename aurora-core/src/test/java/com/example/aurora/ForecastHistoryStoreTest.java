@@ -0,0 +1,137 @@
+package com.example.aurora;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class ForecastHistoryStoreTest {
+
+    private static final long START = 1638370800000L;
+    private static final long CADENCE = 5 * 60 * 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private ForecastHistoryStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "history.bin");
+        store = new ForecastHistoryStore(file, 10 * CADENCE);
+        store.open();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    public void answersHistoryAcrossKeyframesAndDeltas() throws IOException {
+        int records = ForecastHistoryStore.KEYFRAME_INTERVAL + 5;
+        store = reopenWithRetention(records * CADENCE * 2);
+        for (int i = 0; i < records; i++) {
+            store.append(grid(START + i * CADENCE, i));
+        }
+        assertEquals(records, store.size());
+
+        long[] times = new long[records];
+        double[] values = new double[records];
+        assertEquals(records, store.probabilityHistory(69, 18, 0, times, values));
+        for (int i = 0; i < records; i++) {
+            assertEquals(START + i * CADENCE, times[i]);
+            assertEquals(i, values[i], 1e-9);
+        }
+        //a query starting after the keyframe decodes forward from it
+        int since = ForecastHistoryStore.KEYFRAME_INTERVAL + 2;
+        assertEquals(records - since, store.probabilityHistory(69, 18, START + since * CADENCE, times, values));
+        assertEquals(since, values[0], 1e-9);
+    }
+
+    @Test
+    public void ignoresGridsNotNewerThanTheLatest() throws IOException {
+        store.append(grid(START, 1));
+        store.append(grid(START, 2));
+        store.append(grid(START - CADENCE, 3));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void compactsAwayRecordsPastTheRetention() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            store.append(grid(START + i * CADENCE, i));
+        }
+        long latest = START + 19 * CADENCE;
+        assertEquals(true, store.oldestTime() >= latest - 10 * CADENCE - 10 * CADENCE / 4);
+        assertEquals(true, store.size() < 20);
+
+        //the record kept first was rewritten as a keyframe, so its values survive
+        long[] times = new long[20];
+        double[] values = new double[20];
+        int count = store.probabilityHistory(69, 18, 0, times, values);
+        for (int i = 0; i < count; i++) {
+            assertEquals((times[i] - START) / CADENCE, values[i], 1e-9);
+        }
+        //and the compacted file reads back the same after reopening
+        store.close();
+        store.open();
+        assertEquals(count, store.probabilityHistory(69, 18, 0, times, values));
+    }
+
+    @Test
+    public void dropsATornRecordOnOpen() throws IOException {
+        store.append(grid(START, 1));
+        store.append(grid(START + CADENCE, 2));
+        store.close();
+        long intact = file.length();
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try {
+            //a header promising more payload than was written before the crash
+            access.seek(intact);
+            access.writeLong(START + 2 * CADENCE);
+            access.writeByte(ForecastHistoryStore.DELTA);
+            access.writeInt(1000);
+            access.write(new byte[10]);
+        } finally {
+            access.close();
+        }
+
+        store.open();
+        assertEquals(2, store.size());
+        assertEquals(intact, file.length());
+        store.append(grid(START + 2 * CADENCE, 3));
+        long[] times = new long[3];
+        double[] values = new double[3];
+        assertEquals(3, store.probabilityHistory(69, 18, 0, times, values));
+        assertEquals(3, values[2], 1e-9);
+    }
+
+    private ForecastHistoryStore reopenWithRetention(long retention) throws IOException {
+        store.close();
+        ForecastHistoryStore reopened = new ForecastHistoryStore(file, retention);
+        reopened.open();
+        return reopened;
+    }
+
+    //a grid with the given value around northern Scandinavia and a few changing cells elsewhere
+    private static AuroraGrid grid(long observationTime, int value) {
+        byte[] cells = new byte[AuroraGrid.CELLS];
+        for (int lon = 10; lon <= 30; lon++) {
+            for (int lat = 60; lat <= 75; lat++) {
+                cells[AuroraGrid.index(lon, lat)] = (byte) value;
+            }
+        }
+        Arrays.fill(cells, AuroraGrid.index(200, -70), AuroraGrid.index(200, -70) + value, (byte) 50);
+        return new AuroraGrid(cells, observationTime, observationTime + 30 * 60 * 1000);
+    }
+}
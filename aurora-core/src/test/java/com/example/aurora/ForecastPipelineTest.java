@@ -0,0 +1,70 @@
+package com.example.aurora;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ForecastPipelineTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    //Holds every request; the test answers them through the stored callbacks
+    private static final class StubTransport implements HttpTransport {
+        final List<Callback> callbacks = new ArrayList<>();
+
+        @Override
+        public void get(String url, String etag, String lastModified, Callback callback) {
+            callbacks.add(callback);
+        }
+    }
+
+    @Test
+    public void responsesArrivingAfterShutdownAreDropped() {
+        StubTransport transport = new StubTransport();
+        final List<String> outcomes = new ArrayList<>();
+        ForecastPipeline pipeline = new ForecastPipeline(transport, "http://localhost/ovation",
+                Arrays.asList(SpaceWeatherFeed.kp("http://localhost/kp")), new ForecastPipeline.Listener() {
+                    @Override
+                    public void onSnapshotPublished(ForecastSnapshot snapshot) {
+                        outcomes.add("published");
+                    }
+
+                    @Override
+                    public void onRefreshUnchanged() {
+                        outcomes.add("unchanged");
+                    }
+
+                    @Override
+                    public void onRefreshFailed(Exception error) {
+                        outcomes.add("failed");
+                    }
+
+                    @Override
+                    public void onFeedFailed(SpaceWeatherFeed feed, Exception error) {
+                        outcomes.add("feed failed");
+                    }
+                }, new Metrics(), new FakeClock(1638370800000L), DIRECT, Executors.defaultThreadFactory());
+        pipeline.refresh();
+        assertEquals(2, transport.callbacks.size());
+
+        pipeline.shutdown();
+        byte[] body = "{}".getBytes();
+        for (HttpTransport.Callback callback : transport.callbacks) {
+            callback.onResponse(body, null, null);
+        }
+        assertNull(pipeline.getSnapshot());
+        assertEquals(0, outcomes.size());
+    }
+}
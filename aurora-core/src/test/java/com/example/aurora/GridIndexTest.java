@@ -0,0 +1,108 @@
+package com.example.aurora;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+//Checks the index against a scan of every cell
+public class GridIndexTest {
+
+    private static AuroraGrid grid;
+    private static GridIndex index;
+
+    @BeforeClass
+    public static void setUp() {
+        Random random = new Random(7);
+        byte[] cells = new byte[AuroraGrid.CELLS];
+        for (int i = 0; i < cells.length; i++) {
+            //mostly zero, with plateaus of equal values to exercise the tie-breaking
+            cells[i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(10) * 10 : 0);
+        }
+        grid = new AuroraGrid(cells, 0, 0);
+        index = new GridIndex(grid);
+    }
+
+    @Test
+    public void meanMatchesAScan() {
+        Random random = new Random(1);
+        for (int q = 0; q < 200; q++) {
+            int minLatitude = random.nextInt(181) - 90;
+            int maxLatitude = minLatitude + random.nextInt(91 - minLatitude);
+            int minLongitude = random.nextInt(360) - 180;
+            int maxLongitude = random.nextInt(360) - 180;
+            long total = 0;
+            int cells = 0;
+            for (int lat = minLatitude; lat <= maxLatitude; lat++) {
+                for (int lon = minLongitude; ; lon++) {
+                    total += grid.probability(lon, lat);
+                    cells++;
+                    if (Math.floorMod(lon, 360) == Math.floorMod(maxLongitude, 360)) {
+                        break;
+                    }
+                }
+            }
+            assertEquals((double) total / cells, index.meanProbability(minLatitude, maxLatitude, minLongitude, maxLongitude), 1e-9);
+        }
+    }
+
+    @Test
+    public void bestWithinMatchesAScan() {
+        Random random = new Random(2);
+        for (int q = 0; q < 300; q++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            double radius = random.nextDouble() * 2000;
+            int expected = -1;
+            double expectedDistance = 0;
+            for (int i = 0; i < AuroraGrid.CELLS; i++) {
+                double distance = GridIndex.distanceKm(latitude, longitude, GridIndex.latitudeOf(i), GridIndex.longitudeOf(i));
+                if (distance > radius) {
+                    continue;
+                }
+                if (expected < 0 || grid.cell(i) > grid.cell(expected)
+                        || (grid.cell(i) == grid.cell(expected) && distance < expectedDistance)) {
+                    expected = i;
+                    expectedDistance = distance;
+                }
+            }
+            int found = index.bestWithin(latitude, longitude, radius);
+            if (expected < 0) {
+                assertEquals(-1, found);
+                continue;
+            }
+            String query = latitude + ", " + longitude + " within " + radius;
+            assertEquals(query, grid.cell(expected), grid.cell(found));
+            //cells at the same distance are equally good answers; the distance is rounded to metres in the search
+            double distance = GridIndex.distanceKm(latitude, longitude, GridIndex.latitudeOf(found), GridIndex.longitudeOf(found));
+            assertEquals(query, expectedDistance, distance, 0.002);
+        }
+    }
+
+    @Test
+    public void bestInBoxMatchesAScan() {
+        Random random = new Random(3);
+        for (int q = 0; q < 200; q++) {
+            int minLatitude = random.nextInt(171) - 90;
+            int maxLatitude = minLatitude + random.nextInt(Math.min(30, 91 - minLatitude));
+            int minLongitude = random.nextInt(360) - 180;
+            int maxLongitude = minLongitude + random.nextInt(60);
+            double latitude = (minLatitude + maxLatitude) / 2.0;
+            double longitude = (minLongitude + maxLongitude) / 2.0;
+            int best = -1;
+            for (int lat = minLatitude; lat <= maxLatitude; lat++) {
+                for (int lon = minLongitude; lon <= maxLongitude; lon++) {
+                    best = Math.max(best, grid.probability(lon, lat));
+                }
+            }
+            int found = index.bestInBox(latitude, longitude, minLatitude, maxLatitude, minLongitude, maxLongitude);
+            assertEquals(best, grid.cell(found));
+            int foundLatitude = GridIndex.latitudeOf(found);
+            int foundLongitude = Math.floorMod(GridIndex.longitudeOf(found) - minLongitude, 360) + minLongitude;
+            assertEquals(true, foundLatitude >= minLatitude && foundLatitude <= maxLatitude);
+            assertEquals(true, foundLongitude >= minLongitude && foundLongitude <= maxLongitude);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.aurora;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class OvationParserTest {
+
+    private static final String DOCUMENT = "{\"Observation Time\": \"2021-07-22T10:15:00Z\", "
+            + "\"Forecast Time\": \"2021-07-22T10:45:00Z\", \"Data Format\": \"[Longitude, Latitude, Aurora]\", "
+            + "\"coordinates\": [[0, -90, 0], [18, 69, 42], [359, 90, 7]], \"type\": \"MultiPoint\"}";
+
+    @Test
+    public void decodesTimesAndCells() throws IOException {
+        AuroraGrid grid = parse(DOCUMENT, null);
+        assertEquals(1626948900000L, grid.getObservationTime());
+        assertEquals(1626950700000L, grid.getForecastTime());
+        assertEquals(42, grid.probability(18, 69));
+        assertEquals(7, grid.probability(359, 90));
+        assertEquals(0, grid.probability(100, 0));
+    }
+
+    @Test
+    public void stopsEarlyForAKnownForecast() throws IOException {
+        AuroraGrid known = parse(DOCUMENT, null);
+        //the coordinates are never read, so a broken array behind the same times does not matter
+        assertNull(parse(DOCUMENT.replace("[[0, -90, 0]", "[[oops"), known));
+    }
+
+    @Test
+    public void decodesANewerForecast() throws IOException {
+        AuroraGrid known = parse(DOCUMENT, null);
+        AuroraGrid newer = parse(DOCUMENT.replace("10:15:00", "10:20:00"), known);
+        assertNotNull(newer);
+        assertEquals(42, newer.probability(18, 69));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsATruncatedDocument() throws IOException {
+        parse(DOCUMENT.substring(0, DOCUMENT.length() / 2), null);
+    }
+
+    private static AuroraGrid parse(String document, AuroraGrid known) throws IOException {
+        return new OvationParser().parse(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)), known);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.aurora;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PrefetchSchedulerTest {
+
+    private static final long START = 1638370800000L;
+    private static final long MINUTE = 60 * 1000;
+
+    private FakeClock clock;
+    private PrefetchScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock(START);
+        scheduler = new PrefetchScheduler(clock, new Random(1));
+    }
+
+    @Test
+    public void fetchesImmediatelyWithoutAForecast() {
+        assertEquals(0, scheduler.nextFetchDelay(true, false));
+    }
+
+    @Test
+    public void aimsJustAfterTheNextExpectedRun() {
+        scheduler.onForecastReceived(START - PrefetchScheduler.DEFAULT_LAG);
+        long expected = PrefetchScheduler.DEFAULT_CADENCE + PrefetchScheduler.PUBLISH_MARGIN;
+        assertEquals(expected, scheduler.nextFetchDelay(true, false));
+        //metered and not charging: every other run
+        assertEquals(expected + PrefetchScheduler.DEFAULT_CADENCE, scheduler.nextFetchDelay(false, false));
+        assertEquals(expected, scheduler.nextFetchDelay(false, true));
+    }
+
+    //Replays a publisher putting out a run every cadence, lag after its observation time, against fetches made when
+    //the scheduler asks; returns the largest delay between a run coming out and its fetch over the last half of the runs
+    private long replay(long cadence, long lag, int runs) {
+        long worst = 0;
+        for (int received = 0; received < runs; ) {
+            clock.advance(scheduler.nextFetchDelay(true, false));
+            long latest = Math.floorDiv(clock.now() - lag - START, cadence) * cadence + START;
+            if (latest > scheduler.getLastObservation()) {
+                scheduler.onForecastReceived(latest);
+                if (++received > runs / 2) {
+                    worst = Math.max(worst, clock.now() - (latest + lag));
+                }
+            } else {
+                scheduler.onUnchanged();
+            }
+        }
+        return worst;
+    }
+
+    @Test
+    public void learnsCadenceAndLag() {
+        replay(10 * MINUTE, 70 * 1000, 60);
+        assertEquals(10 * MINUTE, scheduler.getCadence(), 1000);
+        assertEquals(70 * 1000, scheduler.getLag(), PrefetchScheduler.UNCHANGED_RETRY);
+    }
+
+    @Test
+    public void fetchesStayCloseBehindThePublisher() {
+        long worst = replay(5 * MINUTE, 90 * 1000, 200);
+        assertTrue("worst " + worst, worst <= PrefetchScheduler.PUBLISH_MARGIN + PrefetchScheduler.UNCHANGED_RETRY);
+        //the lag does not creep up on its own fetch delays
+        assertEquals(90 * 1000, scheduler.getLag(), PrefetchScheduler.UNCHANGED_RETRY);
+    }
+
+    @Test
+    public void gapsOfSeveralRunsAreNotCadence() {
+        scheduler.onForecastReceived(START);
+        clock.advance(3 * 60 * MINUTE);
+        scheduler.onForecastReceived(START + 3 * 60 * MINUTE);
+        assertEquals(PrefetchScheduler.DEFAULT_CADENCE, scheduler.getCadence());
+    }
+
+    @Test
+    public void pollsGentlyWhileTheRunIsOverdue() {
+        scheduler.onForecastReceived(START - PrefetchScheduler.DEFAULT_LAG);
+        clock.advance(PrefetchScheduler.DEFAULT_CADENCE + PrefetchScheduler.PUBLISH_MARGIN);
+        scheduler.onUnchanged();
+        assertEquals(PrefetchScheduler.UNCHANGED_RETRY, scheduler.nextFetchDelay(true, false));
+    }
+
+    @Test
+    public void backsOffWithEqualJitterUpToTheCap() {
+        scheduler.onForecastReceived(START);
+        for (int failures = 1; failures <= 12; failures++) {
+            scheduler.onFailure();
+            long backoff = Math.min(PrefetchScheduler.MAX_BACKOFF, PrefetchScheduler.BASE_BACKOFF << (failures - 1));
+            long delay = scheduler.nextFetchDelay(true, false);
+            assertTrue("failure " + failures + ": " + delay, delay >= backoff / 2 && delay <= backoff);
+        }
+        assertEquals(12, scheduler.getFailures());
+        scheduler.onForecastReceived(START + 5 * MINUTE);
+        assertEquals(0, scheduler.getFailures());
+    }
+}
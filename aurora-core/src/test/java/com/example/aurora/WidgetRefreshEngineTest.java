@@ -0,0 +1,98 @@
+package com.example.aurora;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class WidgetRefreshEngineTest {
+
+    //Holds posted tasks until the test runs them
+    private static final class ManualTimer implements WidgetRefreshEngine.Timer {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            tasks.add(task);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            tasks.remove(task);
+        }
+
+        void runAll() {
+            List<Runnable> due = new ArrayList<>(tasks);
+            tasks.clear();
+            for (Runnable task : due) {
+                task.run();
+            }
+        }
+    }
+
+    private String text = "a";
+    private int probability = -1;
+    private final List<String> pushed = new ArrayList<>();
+    private ManualTimer timer;
+    private Metrics metrics;
+    private WidgetRefreshEngine engine;
+
+    @Before
+    public void setUp() {
+        timer = new ManualTimer();
+        metrics = new Metrics();
+        engine = new WidgetRefreshEngine(new WidgetRefreshEngine.StateProvider() {
+            @Override
+            public String getWidgetText() {
+                return text;
+            }
+
+            @Override
+            public int getDisplayedProbability() {
+                return probability;
+            }
+        }, new WidgetRefreshEngine.Display() {
+            @Override
+            public void push(String text) {
+                pushed.add(text);
+            }
+        }, timer, metrics);
+    }
+
+    @Test
+    public void coalescesRequestsAndPushesOnlyChangedText() {
+        engine.requestRefresh();
+        engine.requestRefresh();
+        assertEquals(1, timer.tasks.size());
+        timer.runAll();
+        engine.requestRefresh();
+        timer.runAll();
+        text = "b";
+        engine.requestRefresh();
+        timer.runAll();
+        assertEquals(Arrays.asList("a", "b"), pushed);
+        assertEquals(2, metrics.get(Metrics.WIDGET_PUSHES));
+    }
+
+    @Test
+    public void stopFlushesThePendingRefresh() {
+        engine.requestRefresh();
+        engine.stop();
+        assertEquals(Arrays.asList("a"), pushed);
+        timer.runAll();
+        engine.stop();
+        assertEquals(1, pushed.size());
+    }
+
+    @Test
+    public void alarmsBackOffWhileQuiet() {
+        assertEquals(2 * WidgetRefreshEngine.BASE_INTERVAL, engine.onAlarm());
+        assertEquals(4 * WidgetRefreshEngine.BASE_INTERVAL, engine.onAlarm());
+        probability = WidgetRefreshEngine.ACTIVE_PROBABILITY;
+        assertEquals(WidgetRefreshEngine.BASE_INTERVAL, engine.onAlarm());
+    }
+}
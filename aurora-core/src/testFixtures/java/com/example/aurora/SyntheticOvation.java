@@ -0,0 +1,38 @@
+package com.example.aurora;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+//Generates OVATION documents laid out like NOAA's, for the benchmarks and the replay harness: both times ahead of the
+//coordinates, longitude-major, latitude ascending, with an auroral oval around both poles. The oval is centred off the
+//geographic pole, as the geomagnetic pole is, and a stronger aurora reaches further from it.
+public final class SyntheticOvation {
+
+    private SyntheticOvation() {
+    }
+
+    //Returns a document observed at the given time, forecast half an hour ahead, with an oval peaking near the given
+    //probability (0-100)
+    public static String document(long observationTime, double strength) {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        StringBuilder json = new StringBuilder(AuroraGrid.CELLS * 16);
+        json.append("{\"Observation Time\": \"").append(iso.format(new Date(observationTime)))
+                .append("\", \"Forecast Time\": \"").append(iso.format(new Date(observationTime + 30 * 60 * 1000)))
+                .append("\", \"Data Format\": \"[Longitude, Latitude, Aurora]\", \"coordinates\": [");
+        for (int lon = 0; lon < AuroraGrid.LONGITUDES; lon++) {
+            double ovalLatitude = 67 + 5 * Math.cos(Math.toRadians(lon)) - strength / 30;
+            for (int lat = -90; lat <= 90; lat++) {
+                double distance = Math.abs(Math.abs(lat) - ovalLatitude);
+                int probability = (int) Math.round(Math.max(0, strength * Math.exp(-distance * distance / 18) - 1));
+                if (lon != 0 || lat != -90) {
+                    json.append(", ");
+                }
+                json.append('[').append(lon).append(", ").append(lat).append(", ").append(probability).append(']');
+            }
+        }
+        return json.append("], \"type\": \"MultiPoint\"}").toString();
+    }
+}
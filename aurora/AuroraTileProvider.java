@@ -0,0 +1,208 @@
+package com.example.aurora;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//Map overlay that draws the aurora probability grid as heatmap tiles.
+//Tiles are keyed by forecast time and tile coordinates, and served from an in-memory LRU cache, then from a disk
+//cache, and only rasterized when both miss, so panning around already visited areas never re-renders.
+//When a new forecast arrives the coarse zoom levels are pre-rendered on a background executor.
+public class AuroraTileProvider implements TileProvider {
+
+    static final int MEMORY_CACHE_BYTES = 4 * 1024 * 1024;
+    //Approximate heap cost of a cache entry besides the tile bytes: the key string, the entry and the array header.
+    //Charged for every entry, so the many empty tiles outside the oval still count against the cache size.
+    static final int ENTRY_OVERHEAD_BYTES = 160;
+    //Zoom levels up to this one are rendered ahead of time for every new forecast
+    static final int PREWARM_MAX_ZOOM = 2;
+
+    private final File cacheRoot;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final LruCache<String, byte[]> memoryCache = new LruCache<String, byte[]>(MEMORY_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, byte[] value) {
+            return value.length + ENTRY_OVERHEAD_BYTES;
+        }
+    };
+    //Maps requests tiles from several threads at once, so every thread gets its own rasterizer and pixel buffer
+    private final ThreadLocal<TileRasterizer> rasterizers = new ThreadLocal<TileRasterizer>() {
+        @Override
+        protected TileRasterizer initialValue() {
+            return new TileRasterizer();
+        }
+    };
+    private final ThreadLocal<int[]> pixelBuffers = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[TileRasterizer.TILE_SIZE * TileRasterizer.TILE_SIZE];
+        }
+    };
+
+    private volatile ForecastSnapshot snapshot;
+
+    public AuroraTileProvider(File cacheRoot) {
+        this.cacheRoot = cacheRoot;
+    }
+
+    //Switches the overlay to a new forecast. Returns true if it changed, in which case the overlay's tile cache should be cleared.
+    public boolean setSnapshot(final ForecastSnapshot next) {
+        ForecastSnapshot previous = snapshot;
+        if (next == null || (previous != null && previous.getGrid().getForecastTime() == next.getGrid().getForecastTime()
+                && previous.getGrid().getObservationTime() == next.getGrid().getObservationTime())) {
+            return false;
+        }
+        snapshot = next;
+        memoryCache.evictAll();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deleteStaleTiles(cacheKey(next.getGrid()));
+                for (int zoom = 0; zoom <= PREWARM_MAX_ZOOM; zoom++) {
+                    for (int x = 0; x < 1 << zoom; x++) {
+                        for (int y = 0; y < 1 << zoom; y++) {
+                            if (snapshot != next) {
+                                return;
+                            }
+                            loadTile(next.getGrid(), x, y, zoom);
+                        }
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public Tile getTile(int x, int y, int zoom) {
+        ForecastSnapshot current = snapshot;
+        if (current == null || !TileRasterizer.isValid(x, y, zoom)) {
+            return NO_TILE;
+        }
+        byte[] png = loadTile(current.getGrid(), x, y, zoom);
+        if (png.length == 0) {
+            return NO_TILE;
+        }
+        return new Tile(TileRasterizer.TILE_SIZE, TileRasterizer.TILE_SIZE, png);
+    }
+
+    //stops pre-rendering; cached tiles stay on disk for the next session
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    //Returns the encoded tile from memory, disk or a fresh render, in that order. An empty array means a fully transparent tile.
+    private byte[] loadTile(AuroraGrid grid, int x, int y, int zoom) {
+        String forecastKey = cacheKey(grid);
+        String key = forecastKey + "/" + zoom + "/" + x + "_" + y;
+        byte[] png = memoryCache.get(key);
+        if (png != null) {
+            return png;
+        }
+        File file = new File(cacheRoot, key + ".png");
+        png = readFile(file);
+        if (png == null) {
+            png = render(grid, x, y, zoom);
+            writeFile(file, png);
+        }
+        memoryCache.put(key, png);
+        return png;
+    }
+
+    private byte[] render(AuroraGrid grid, int x, int y, int zoom) {
+        int[] pixels = pixelBuffers.get();
+        if (!rasterizers.get().rasterize(grid, x, y, zoom, pixels)) {
+            return new byte[0];
+        }
+        Bitmap bitmap = Bitmap.createBitmap(pixels, TileRasterizer.TILE_SIZE, TileRasterizer.TILE_SIZE, Bitmap.Config.ARGB_8888);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        bitmap.recycle();
+        return out.toByteArray();
+    }
+
+    private static String cacheKey(AuroraGrid grid) {
+        return grid.getObservationTime() + "-" + grid.getForecastTime();
+    }
+
+    //removes the disk tiles of every forecast other than the current one
+    private void deleteStaleTiles(String currentKey) {
+        File[] forecasts = cacheRoot.listFiles();
+        if (forecasts == null) {
+            return;
+        }
+        for (File forecast : forecasts) {
+            if (!forecast.getName().equals(currentKey)) {
+                deleteRecursively(forecast);
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static byte[] readFile(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                byte[] data = new byte[(int) file.length()];
+                int read = 0;
+                while (read < data.length) {
+                    int n = in.read(data, read, data.length - read);
+                    if (n < 0) {
+                        return null;
+                    }
+                    read += n;
+                }
+                return data;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static void writeFile(File file, byte[] data) {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp" + Thread.currentThread().getId());
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            temp.delete();
+        }
+    }
+}
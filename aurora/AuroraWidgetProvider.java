@@ -1,26 +1,36 @@
 package com.example.aurora;
 
-import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
 import android.content.Context;
-import android.content.Intent;
-import android.os.SystemClock;
+import android.os.Build;
+import android.widget.RemoteViews;
 
 public class AuroraWidgetProvider extends AppWidgetProvider {
 
 
-    private PendingIntent pendingIntent;
-
+    //Starts the refresh cycle straight away. From Lollipop on a fetch job is started unless one is already pending,
+    //and the service schedules the following ones; before that, ticks are scheduled one at a time by the WidgetAlarm.
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
-        final AlarmManager manager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        final Intent i = new Intent(context, ProbabilityNetworkService.class);
-
-        if (pendingIntent == null) {
-            pendingIntent = PendingIntent.getService(context, 0, i, PendingIntent.FLAG_CANCEL_CURRENT);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            ForecastJobService.ensureScheduled(context);
+        } else {
+            WidgetAlarm.schedule(context, 0);
         }
-        manager.setRepeating(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime(), 600000, pendingIntent);
+    }
+
+    //Stops the alarm refresh cycle once the last widget is removed. Fetch jobs keep running, as alerts depend on them.
+    @Override
+    public void onDisabled(Context context) {
+        WidgetAlarm.cancel(context);
+    }
+
+    //Draws the text on every instance of the widget
+    static void show(Context context, String text) {
+        RemoteViews view = new RemoteViews(context.getPackageName(), R.layout.appwidget);
+        view.setTextViewText(R.id.widgetText, text);
+        AppWidgetManager.getInstance(context).updateAppWidget(new ComponentName(context, AuroraWidgetProvider.class), view);
     }
 }
@@ -0,0 +1,83 @@
+package com.example.aurora;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Build;
+import android.os.IBinder;
+
+import androidx.annotation.RequiresApi;
+
+//Job that fetches the forecast at the time chosen by the PrefetchScheduler, in place of an alarm starting the service.
+//It binds to ProbabilityNetworkService for the duration of one refresh and finishes once the refresh has an outcome.
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+public class ForecastJobService extends JobService {
+
+    static final int JOB_ID = 7230;
+
+    private ServiceConnection connection;
+
+    //Schedules the next fetch. The job prefers an unmetered network after minDelay, and runs on any network once maxDelay has passed.
+    public static void schedule(Context context, long minDelay, long maxDelay) {
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, ForecastJobService.class))
+                .setMinimumLatency(minDelay)
+                .setOverrideDeadline(Math.max(minDelay, maxDelay))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .build();
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        scheduler.schedule(job);
+    }
+
+    //Starts a fetch job straight away unless one is already pending or running
+    public static void ensureScheduled(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        schedule(context, 0, 0);
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        connection = new ServiceConnection() {
+            @Override
+            public void onServiceConnected(ComponentName name, IBinder service) {
+                ProbabilityNetworkService networkService = ((ProbabilityNetworkService.NetworkBinder) service).getService();
+                networkService.refreshForJob(new Runnable() {
+                    @Override
+                    public void run() {
+                        unbind();
+                        jobFinished(params, false);
+                    }
+                });
+            }
+
+            @Override
+            public void onServiceDisconnected(ComponentName name) {
+            }
+        };
+        Intent intent = new Intent(this, ProbabilityNetworkService.class).setAction(ProbabilityNetworkService.ACTION_FETCH);
+        return bindService(intent, connection, Context.BIND_AUTO_CREATE);
+    }
+
+    //The service schedules the next job itself once a refresh finishes, so a stopped job is not rescheduled here
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        unbind();
+        return false;
+    }
+
+    private void unbind() {
+        if (connection != null) {
+            unbindService(connection);
+            connection = null;
+        }
+    }
+}
@@ -33,10 +33,18 @@ import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.CameraPosition;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.TileOverlay;
+import com.google.android.gms.maps.model.TileOverlayOptions;
 import com.google.android.gms.tasks.OnSuccessListener;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
 //Read readme for more information about the program. Main function is to show your local aurora probability and the magnetic field sensor reading in one dimension.
 public class MainActivity extends AppCompatActivity implements OnMapReadyCallback {
 
@@ -46,13 +54,28 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
     private GoogleMap map;
     private Location mCurrentLocation;
     private LocationRequest locationRequest;
+    private final LocationGate locationGate = new LocationGate();
 
     private TextView localProbabilityDisplay;
     private TextView localMagneticFieldDisplay;
 
+    private AuroraTileProvider tileProvider;
+    private TileOverlay tileOverlay;
+    private Marker bestSpotMarker;
+    //How far the best nearby spot is looked for, about a day trip by car
+    static final double BEST_SPOT_RADIUS_KM = 500;
+    //One marker per watched site, showing its probability and viewing score; the marker's tag is the site's name
+    private final List<Marker> watchedSiteMarkers = new ArrayList<>();
+    private WatchlistResult watchlistResult = WatchlistResult.EMPTY;
+
     private ProbabilityNetworkService probabilityNetworkService;
     boolean bound = false;
-    private Double azimuthValue = 0.0;
+    //set once permission is granted and the views are set up; the service is only bound from then on
+    private boolean setUp = false;
+    private double azimuthValue = 0.0;
+    private final List<EventBus.Subscription> subscriptions = new ArrayList<>();
+    private LocalProbabilityChanged localProbability;
+    private boolean connected = true;
 
     //On app creation, a permission check is performed. If it fails, attempts are made to receive permission until it is granted. Once granted, a setup method is called
     @Override
@@ -87,6 +110,7 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
 
     //Sets up the map, view objects, and provides an initial location. Also creates and binds to the network service
     private void setup() {
+        setUp = true;
 
 
         localProbabilityDisplay = findViewById(R.id.probability);
@@ -115,47 +139,153 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
         mapFragment.getMapAsync(this);
 
         locationCallback = new LocationCallback() {
-            @RequiresApi(api = Build.VERSION_CODES.M)
             @Override
             public void onLocationResult(LocationResult locationResult) {
                 if (locationResult == null) {
                     return;
                 }
-                for (Location location : locationResult.getLocations()) {
-                    mCurrentLocation = location;
-                    if (probabilityNetworkService != null) {
-                        updateLocalFields(location);
-                        azimuthValue = probabilityNetworkService.getAzimuth();
-
-                    }
+                //a batch is handled in one pass: only its newest location matters for what is displayed
+                Location location = locationResult.getLastLocation();
+                if (location == null) {
+                    return;
                 }
-
+                mCurrentLocation = location;
+                reportLocation();
             }
         };
 
         createLocationRequest();
+        bindNetworkService();
+    }
+
+    //Binds to the network service unless already bound. The binding lasts from onStart to onStop, so the service can
+    //turn its sensors off while the activity is not visible.
+    private void bindNetworkService() {
+        if (bound) {
+            return;
+        }
         Intent probabilityNetworkServiceIntent = new Intent(this, ProbabilityNetworkService.class);
-        bindService(probabilityNetworkServiceIntent, connection, Context.BIND_AUTO_CREATE);
+        bound = bindService(probabilityNetworkServiceIntent, connection, Context.BIND_AUTO_CREATE);
     }
 
-    //Updates the textviews that display sensor values and the aurora probability textview
-    @RequiresApi(api = Build.VERSION_CODES.M)
-    private void updateLocalFields(Location location) {
-
-        if (probabilityNetworkService.checkConnected()) {
-            int probability = probabilityNetworkService.findProbability((int) Math.round(location.getLongitude()), (int) Math.round(location.getLatitude()));
-            int magField = probabilityNetworkService.magReading();
-            //if the service returns -1, it has failed to retrieve the reading and a standby message is displayed. If not, the reading is displayed.
-            if (probability != -1) {
-                localProbabilityDisplay.setText("Local aurora probability: " + probability + "%");
-            } else {
-                localProbabilityDisplay.setText("Loading local probability...");
+    //Drops the event subscriptions and the binding; events published meanwhile are caught up on the next bind
+    private void unbindNetworkService() {
+        unsubscribe();
+        if (bound) {
+            unbindService(connection);
+            bound = false;
+        }
+        probabilityNetworkService = null;
+    }
+
+    //Hands the current location to the service when it has moved to a different grid cell. The service publishes the
+    //resulting probability as an event; new forecasts are recomputed by the service itself, so only moves matter here.
+    private void reportLocation() {
+        if (probabilityNetworkService == null || mCurrentLocation == null) {
+            return;
+        }
+        if (locationGate.accept(mCurrentLocation.getLatitude(), mCurrentLocation.getLongitude())) {
+            probabilityNetworkService.findProbability(mCurrentLocation.getLongitude(), mCurrentLocation.getLatitude());
+        }
+    }
+
+    //Subscribes the views to the service's events, all delivered on the main thread. Each subscriber only ever sees
+    //the latest event of its type, however far behind it falls.
+    private void subscribe() {
+        EventBus bus = probabilityNetworkService.getEventBus();
+        Executor main = ContextCompat.getMainExecutor(this);
+        subscriptions.add(bus.subscribe(LocalProbabilityChanged.class, new EventBus.Subscriber<LocalProbabilityChanged>() {
+            @Override
+            public void onEvent(LocalProbabilityChanged event) {
+                localProbability = event;
+                showLocalProbability();
             }
-            if (magField != -1) {
-                localMagneticFieldDisplay.setText("Local magnetic field strength north: " + magField + "μ");
-            } else {
-                localMagneticFieldDisplay.setText("Loading local magnetic field strength...");
+        }, main));
+        subscriptions.add(bus.subscribe(ConnectivityChanged.class, new EventBus.Subscriber<ConnectivityChanged>() {
+            @Override
+            public void onEvent(ConnectivityChanged event) {
+                connected = event.isConnected();
+                showLocalProbability();
+            }
+        }, main));
+        subscriptions.add(bus.subscribe(MagFieldSample.class, new EventBus.Subscriber<MagFieldSample>() {
+            @Override
+            public void onEvent(MagFieldSample event) {
+                azimuthValue = event.getAzimuth();
+                setText(localMagneticFieldDisplay, "Local magnetic field strength: " + (int) event.getMagneticField() + " μT"
+                        + (event.hasInterference() ? " (magnetic interference, compass may be off)" : ""));
+            }
+        }, main));
+        subscriptions.add(bus.subscribe(ForecastUpdated.class, new EventBus.Subscriber<ForecastUpdated>() {
+            @Override
+            public void onEvent(ForecastUpdated event) {
+                updateOverlay();
             }
+        }, main));
+        subscriptions.add(bus.subscribe(WatchlistUpdated.class, new EventBus.Subscriber<WatchlistUpdated>() {
+            @Override
+            public void onEvent(WatchlistUpdated event) {
+                watchlistResult = event.getResult();
+                showWatchlist();
+            }
+        }, main));
+    }
+
+    //Redraws the watched site markers from the latest result
+    private void showWatchlist() {
+        if (map == null) {
+            return;
+        }
+        for (Marker marker : watchedSiteMarkers) {
+            marker.remove();
+        }
+        watchedSiteMarkers.clear();
+        WatchlistResult result = watchlistResult;
+        for (int i = 0; i < result.size(); i++) {
+            WatchedSite site = result.getSite(i);
+            Marker marker = map.addMarker(new MarkerOptions()
+                    .position(new LatLng(site.getLatitude(), site.getLongitude()))
+                    .title(site.getName())
+                    .snippet(Math.round(result.getProbability(i)) + "%, viewing score " + Math.round(result.getScore(i))
+                            + " (tap to stop watching)"));
+            marker.setTag(site.getName());
+            watchedSiteMarkers.add(marker);
+        }
+    }
+
+    private void unsubscribe() {
+        for (EventBus.Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+        subscriptions.clear();
+    }
+
+    //Updates the aurora probability textview from the latest event. Until the first probability arrives a standby message is displayed.
+    private void showLocalProbability() {
+        if (localProbability == null) {
+            setText(localProbabilityDisplay, "Loading local probability...");
+            return;
+        }
+        int trend = localProbability.getTrend();
+        setText(localProbabilityDisplay, "Local aurora probability: " + localProbability.getProbability() + "%"
+                + (trend > 0 ? " (rising)" : trend < 0 ? " (falling)" : "")
+                + (connected ? "" : " (offline)"));
+    }
+
+    //Sets the text only if it differs, sparing the view a relayout
+    private static void setText(TextView view, String text) {
+        if (!text.contentEquals(view.getText())) {
+            view.setText(text);
+        }
+    }
+
+    //Points the aurora overlay at the service's latest forecast, redrawing the tiles only if the forecast changed
+    private void updateOverlay() {
+        if (tileProvider == null || probabilityNetworkService == null) {
+            return;
+        }
+        if (tileProvider.setSnapshot(probabilityNetworkService.getSnapshot())) {
+            tileOverlay.clearTileCache();
         }
     }
 
@@ -173,10 +303,28 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
 
     //callback for the reorient button, which refocuses back to the last retrieved location and reorients the view according to the latest compass read
     public void reorient(View view) {
-        CameraPosition position = new CameraPosition(new LatLng(mCurrentLocation.getLatitude(), mCurrentLocation.getLongitude()), map.getCameraPosition().zoom, map.getCameraPosition().tilt, azimuthValue.floatValue());
+        CameraPosition position = new CameraPosition(new LatLng(mCurrentLocation.getLatitude(), mCurrentLocation.getLongitude()), map.getCameraPosition().zoom, map.getCameraPosition().tilt, (float) azimuthValue);
         map.moveCamera(CameraUpdateFactory.newCameraPosition(position));
     }
 
+    //callback for the best spot button, which moves the map to the highest probability within reach of the last retrieved location
+    public void jumpToBestSpot(View view) {
+        if (probabilityNetworkService == null || mCurrentLocation == null || map == null) {
+            return;
+        }
+        int cell = probabilityNetworkService.findBestSpot(mCurrentLocation.getLongitude(), mCurrentLocation.getLatitude(), BEST_SPOT_RADIUS_KM);
+        if (cell < 0) {
+            return;
+        }
+        LatLng spot = new LatLng(GridIndex.latitudeOf(cell), GridIndex.longitudeOf(cell));
+        if (bestSpotMarker != null) {
+            bestSpotMarker.remove();
+        }
+        bestSpotMarker = map.addMarker(new MarkerOptions().position(spot)
+                .title("Best nearby: " + probabilityNetworkService.getSnapshot().getGrid().cell(cell) + "%"));
+        map.animateCamera(CameraUpdateFactory.newLatLng(spot));
+    }
+
     //method that returns a serviceconnection object linking to the network service
     private ServiceConnection connection = new ServiceConnection() {
         @Override
@@ -184,21 +332,31 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
                                        IBinder service) {
             ProbabilityNetworkService.NetworkBinder binder = (ProbabilityNetworkService.NetworkBinder) service;
             probabilityNetworkService = binder.getService();
-            bound = true;
+            //values shown before the service was bound are recomputed on the next update
+            locationGate.reset();
+            probabilityNetworkService.setMapVisible(true);
+            subscribe();
+            reportLocation();
         }
 
+        //The service's process died; the binding stays and onServiceConnected is called again once it restarts
         @Override
         public void onServiceDisconnected(ComponentName arg0) {
-            bound = false;
+            unsubscribe();
+            probabilityNetworkService = null;
         }
     };
 
-    //Sets up a location request and begins map location updates, requesting the location on a set time interval
+    //Sets up a location request and begins map location updates, requesting the location on a set time interval.
+    //The forecast has one-degree (about 111 km) resolution, so wifi and cell positioning are accurate enough and GPS
+    //stays off. Updates closer than the displacement are dropped by the provider, and may be delivered in batches.
     protected void createLocationRequest() {
         LocationRequest locationRequest = LocationRequest.create();
-        locationRequest.setInterval(50000);
-        locationRequest.setFastestInterval(5000);
-        locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        locationRequest.setInterval(60000);
+        locationRequest.setFastestInterval(30000);
+        locationRequest.setMaxWaitTime(120000);
+        locationRequest.setSmallestDisplacement(500);
+        locationRequest.setPriority(LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY);
         this.locationRequest = locationRequest;
         LocationSettingsRequest.Builder builder = new LocationSettingsRequest.Builder()
                 .addLocationRequest(locationRequest);
@@ -217,9 +375,47 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
         }
     }
 
+    //Drops the compass to low power sampling while the map is not in the foreground
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (probabilityNetworkService != null) {
+            probabilityNetworkService.setMapVisible(false);
+        }
+    }
+
+    //Binds to the service again when the activity becomes visible, which resubscribes the views to its events
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (setUp) {
+            bindNetworkService();
+        }
+    }
+
+    //Unbinds from the service so it can stop its sensors once no activity needs them, and stops the events from
+    //updating views that are not visible
+    @Override
+    protected void onStop() {
+        unbindNetworkService();
+        super.onStop();
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (tileProvider != null) {
+            tileProvider.shutdown();
+        }
+        super.onDestroy();
+    }
+
     //restarts location updates and gets the current location if permissions are granted.
+    //Also returns the compass to UI rate sampling now that the map is visible again.
     private void resumeSetup() {
 
+        if (probabilityNetworkService != null) {
+            probabilityNetworkService.setMapVisible(true);
+        }
 
         if (requestingLocationUpdates) {
             startLocationUpdates();
@@ -251,6 +447,28 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
 
         map = googleMap;
         map.getUiSettings().setZoomControlsEnabled(true);
+        tileProvider = new AuroraTileProvider(new File(getCacheDir(), "tiles"));
+        tileOverlay = map.addTileOverlay(new TileOverlayOptions().tileProvider(tileProvider).transparency(0.3f));
+        updateOverlay();
+        //a long press watches the spot: it gets an alert rule and a marker with its viewing score
+        map.setOnMapLongClickListener(new GoogleMap.OnMapLongClickListener() {
+            @Override
+            public void onMapLongClick(LatLng point) {
+                if (probabilityNetworkService != null) {
+                    probabilityNetworkService.addWatchedSite(new WatchedSite(
+                            String.format(Locale.US, "%.2f, %.2f", point.latitude, point.longitude), point.latitude, point.longitude));
+                }
+            }
+        });
+        map.setOnInfoWindowClickListener(new GoogleMap.OnInfoWindowClickListener() {
+            @Override
+            public void onInfoWindowClick(Marker marker) {
+                if (probabilityNetworkService != null && watchedSiteMarkers.contains(marker)) {
+                    probabilityNetworkService.removeWatchedSite((String) marker.getTag());
+                }
+            }
+        });
+        showWatchlist();
         //if location permissions are granted, enables UI element for moving camera to your current location
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED && ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
             return;
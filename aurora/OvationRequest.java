@@ -0,0 +1,73 @@
+package com.example.aurora;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//Volley request for the OVATION feed. It only downloads: the raw body is handed on to the parse stage of the
+//ForecastPipeline, so no Volley or main thread time is spent decoding it.
+//The request is conditional: it carries the validators of the last response, and delivers null instead of a body
+//when the server answers 304. It bypasses Volley's disk cache, whose own validators would turn a 304 into "unchanged"
+//for a process that holds no grid; the ForecastFetcher decides when validators are sent.
+public class OvationRequest extends Request<byte[]> {
+
+    private final Response.Listener<byte[]> listener;
+    private final String etag;
+    private final String lastModified;
+
+    private volatile String responseEtag;
+    private volatile String responseLastModified;
+
+    public OvationRequest(String url, String etag, String lastModified,
+                          Response.Listener<byte[]> listener, Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        this.listener = listener;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        setShouldCache(false);
+    }
+
+    //Adds the validators of the previous response, if the fetcher passed any
+    @Override
+    public Map<String, String> getHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        if (etag != null) {
+            headers.put("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+        return headers;
+    }
+
+    @Override
+    protected Response<byte[]> parseNetworkResponse(NetworkResponse response) {
+        if (response.notModified) {
+            //nothing to parse
+            return Response.success(null, null);
+        }
+        if (response.headers != null) {
+            responseEtag = response.headers.get("ETag");
+            responseLastModified = response.headers.get("Last-Modified");
+        }
+        return Response.success(response.data, null);
+    }
+
+    @Override
+    protected void deliverResponse(byte[] response) {
+        listener.onResponse(response);
+    }
+
+    //ETag of the response, or null if the server sent none or answered 304
+    public String getResponseEtag() {
+        return responseEtag;
+    }
+
+    //Last-Modified of the response, or null if the server sent none or answered 304
+    public String getResponseLastModified() {
+        return responseLastModified;
+    }
+}
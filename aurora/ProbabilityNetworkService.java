@@ -4,23 +4,24 @@ import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.Service;
-import android.appwidget.AppWidgetManager;
-import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.hardware.SensorManager;
 import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.BatteryManager;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
 import android.os.Message;
-import android.os.Vibrator;
-import android.widget.RemoteViews;
+import android.os.Process;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -29,54 +30,159 @@ import androidx.annotation.RequiresApi;
 import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
 
-import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.Response;
-import com.android.volley.VolleyError;
-import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.Volley;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 //Service for accessing network-reliant functions and sensor data.
 
-public class ProbabilityNetworkService extends Service implements SensorEventListener {
+public class ProbabilityNetworkService extends Service {
 
     private final IBinder binder = new NetworkBinder();
     private ConnectivityManager cm;
-    private String url = "https://services.swpc.noaa.gov/json/ovation_aurora_latest.json";
-    private JSONObject object;
-    private RequestQueue queue;
-
-    private SensorManager sensorManager;
-    private final float[] accelerometerReading = new float[3];
-    private final float[] magnetometerReading = new float[3];
+    private String url = ForecastFetcher.OVATION_URL;
+    private ForecastPipeline pipeline;
+    private VolleyTransport transport;
+    private SnapshotStorage snapshotStore;
+    private ForecastHistoryStore historyStore;
+    private PrefetchScheduler prefetchScheduler;
+    //Completion callbacks of fetch jobs waiting for the outcome of the current refresh
+    private final List<Runnable> pendingJobs = new ArrayList<>();
+    //Binding action used by ForecastJobService, which needs the pipeline but not the sensors
+    static final String ACTION_FETCH = "com.example.aurora.action.FETCH";
+    //The trend is read from the history store on the disk thread only, after each appended forecast and whenever the
+    //location moves to another grid cell, and handed back to the main thread; the buffers belong to the disk thread
+    static final long TREND_WINDOW = 60 * 60 * 1000;
+    private final long[] trendTimes = new long[64];
+    private final double[] trendValues = new double[64];
+    private WidgetRefreshEngine widgetEngine;
+    //Everything derived from the forecast snapshots and the reported location; the service supplies the persistence,
+    //the history reads for the trend and the notifications
+    private ForecastCoordinator coordinator;
+    private SharedPreferences preferences;
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Metrics metrics = new Metrics();
+    private final EventBus eventBus = new EventBus();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    //Delivers bus events on the main thread, for subscribers that touch views or service state
+    private final Executor mainExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            mainHandler.post(command);
+        }
+    };
+    //The forecast parse thread runs at background priority so that decoding never competes with the UI
+    private static final ThreadFactory PARSE_THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "forecast-parse");
+        }
+    };
+    private ConnectivityManager.NetworkCallback networkCallback;
+    //Only written from the connectivity callback thread, after the first publish in onCreate
+    private boolean publishedConnected;
+    private boolean publishedUnmetered;
+    private File metricsFile;
+    private final Runnable metricsDump = new Runnable() {
+        @Override
+        public void run() {
+            dumpMetrics();
+            mainHandler.postDelayed(this, METRICS_DUMP_INTERVAL);
+        }
+    };
+    static final long METRICS_DUMP_INTERVAL = 15 * 60 * 1000;
+    private final Runnable watchlistRescore = new Runnable() {
+        @Override
+        public void run() {
+            coordinator.rescoreWatchlist();
+            mainHandler.postDelayed(this, ForecastCoordinator.WATCHLIST_RESCORE_INTERVAL);
+        }
+    };
+    //Once the dump file passes this size it is moved aside and a new one is started
+    static final long METRICS_FILE_LIMIT = 256 * 1024;
 
-    private final float[] rotationMatrix = new float[9];
-    private final float[] orientationAngles = new float[3];
+    private SensorFusion sensorFusion;
+    private boolean mapVisible = false;
 
-    private int latestProbability = -1;
-    private int magField = 0;
-    private Double azimuthValue = 0.0;
+    private long savedObservationTime = 0;
+    //Observation time of the forecast restored from disk, written by the disk thread before the restored snapshot is published
+    private volatile long restoredObservationTime = 0;
+    //Refreshes wait for the restore, so the first grid fetch can be a conditional one against the restored forecast
+    private boolean restoring = true;
+    private boolean refreshAfterRestore = false;
 
     //The class that defines the binder to be returned when the service is bound by an activity.
     public class NetworkBinder extends Binder {
         ProbabilityNetworkService getService() {
             return ProbabilityNetworkService.this;
         }
+
+        Metrics getMetrics() {
+            return metrics;
+        }
+
+        EventBus getEventBus() {
+            return eventBus;
+        }
     }
 
 
 
-    //returns a binder when an activity requests binding to the service.
+    //returns a binder when an activity requests binding to the service, and starts the sensors for the new client.
     @Nullable
     @Override
     public IBinder onBind(Intent intent) {
+        if (!ACTION_FETCH.equals(intent.getAction())) {
+            updateSensorMode(true);
+        }
         return binder;
     }
 
+    //Called when a client binds again after all clients had unbound
+    @Override
+    public void onRebind(Intent intent) {
+        updateSensorMode(true);
+    }
+
+    //Stops the sensors once the last client has unbound. Returning true asks for onRebind on the next bind.
+    @Override
+    public boolean onUnbind(Intent intent) {
+        if (ACTION_FETCH.equals(intent.getAction())) {
+            return false;
+        }
+        updateSensorMode(false);
+        return true;
+    }
+
+    //Tells the service whether the map is on screen, so the compass can sample at UI rate only while it is visible
+    public void setMapVisible(boolean visible) {
+        mapVisible = visible;
+        updateSensorMode(true);
+    }
+
+    private void updateSensorMode(boolean bound) {
+        if (!bound) {
+            sensorFusion.setMode(SensorFusion.MODE_OFF);
+        } else {
+            sensorFusion.setMode(mapVisible ? SensorFusion.MODE_INTERACTIVE : SensorFusion.MODE_LOW_POWER);
+        }
+    }
+
 
     //The service's handler, allowing message and thread handling to occur.
     private final class ServiceHandler extends Handler {
@@ -92,71 +198,341 @@ public class ProbabilityNetworkService extends Service implements SensorEventLis
         }
     }
 
-    //onCreate method sets up connectivity/sensor managers, sensor listeners and sensor objects.
+    //onCreate method sets up connectivity/sensor managers and sensor objects. Sensors only run while a client is bound.
     @Override
     public void onCreate() {
         cm = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
-        queue = Volley.newRequestQueue(this);
-        requestProbabilityArray();
+        preferences = getSharedPreferences("aurora", Context.MODE_PRIVATE);
+        snapshotStore = new ForecastSnapshotStore(new File(getFilesDir(), "forecast.bin"));
+        historyStore = new ForecastHistoryStore(new File(getFilesDir(), "history.bin"));
+        metricsFile = new File(getFilesDir(), "metrics.jsonl");
+        mainHandler.postDelayed(metricsDump, METRICS_DUMP_INTERVAL);
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    historyStore.open();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        prefetchScheduler = new PrefetchScheduler(Clock.SYSTEM, new Random());
+        prefetchScheduler.restore(preferences.getLong("prefetch.observation", 0),
+                preferences.getLong("prefetch.cadence", PrefetchScheduler.DEFAULT_CADENCE),
+                preferences.getLong("prefetch.lag", PrefetchScheduler.DEFAULT_LAG));
+        //all products share Volley's request queue, so its connections and worker threads
+        List<SpaceWeatherFeed> feeds = Arrays.asList(SpaceWeatherFeed.kp(SpaceWeatherFeed.KP_URL),
+                SpaceWeatherFeed.solarWindMag(SpaceWeatherFeed.SOLAR_WIND_MAG_URL));
+        transport = new VolleyTransport(VolleyTransport.getRequestQueue(this));
+        pipeline = new ForecastPipeline(transport, url, feeds, new ForecastPipeline.Listener() {
+
+            @Override
+            public void onSnapshotPublished(ForecastSnapshot snapshot) {
+                coordinator.onSnapshotPublished(snapshot);
+            }
 
-        sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
-        Sensor accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+            @Override
+            public void onRefreshUnchanged() {
+                prefetchScheduler.onUnchanged();
+                finishRefresh();
+            }
 
-        if (accelerometer != null) {
-            sensorManager.registerListener(this, accelerometer,
-                    SensorManager.SENSOR_DELAY_NORMAL, SensorManager.SENSOR_DELAY_UI);
-        }
-        Sensor magneticField = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
-        if (magneticField != null) {
-            sensorManager.registerListener(this, magneticField,
-                    SensorManager.SENSOR_DELAY_NORMAL, SensorManager.SENSOR_DELAY_UI);
+            @Override
+            public void onRefreshFailed(Exception error) {
+                prefetchScheduler.onFailure();
+                finishRefresh();
+            }
+
+            @Override
+            public void onFeedFailed(SpaceWeatherFeed feed, Exception error) {
+                //counted in the metrics; the feed is fetched again on the next refresh
+            }
+        }, metrics, Clock.SYSTEM, mainExecutor, PARSE_THREADS);
+        coordinator = new ForecastCoordinator(pipeline, eventBus, metrics, Clock.SYSTEM, new ForecastCoordinator.Host() {
+
+            @Override
+            public void onNewGrid(AuroraGrid grid) {
+                //a grid restored from disk at start-up is already saved and says nothing about the publish cadence
+                if (grid.getObservationTime() == restoredObservationTime) {
+                    savedObservationTime = restoredObservationTime;
+                } else if (grid.getObservationTime() != savedObservationTime) {
+                    prefetchScheduler.onForecastReceived(grid.getObservationTime());
+                    preferences.edit()
+                            .putLong("prefetch.observation", prefetchScheduler.getLastObservation())
+                            .putLong("prefetch.cadence", prefetchScheduler.getCadence())
+                            .putLong("prefetch.lag", prefetchScheduler.getLag())
+                            .apply();
+                    finishRefresh();
+                }
+                saveSnapshot(grid);
+            }
+
+            @Override
+            public void requestTrend(double longitude, double latitude, int cell) {
+                updateTrend(longitude, latitude, cell);
+            }
+
+            @Override
+            public void onAlertRuleAdded(AlertRule rule) {
+                restoreAlertState(rule);
+            }
+
+            @Override
+            public void onAlert(AlertRule rule, int score) {
+                alert(rule, score);
+            }
+
+            @Override
+            public void onAlertsEvaluated() {
+                saveAlertState();
+            }
+        });
+        widgetEngine = new WidgetRefreshEngine(coordinator, new WidgetRefreshEngine.Display() {
+            @Override
+            public void push(String text) {
+                AuroraWidgetProvider.show(ProbabilityNetworkService.this, text);
+            }
+        }, new WidgetRefreshEngine.Timer() {
+            @Override
+            public void postDelayed(Runnable task, long delayMillis) {
+                mainHandler.postDelayed(task, delayMillis);
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                mainHandler.removeCallbacks(task);
+            }
+        }, metrics);
+        //the widget shows the local probability, the best watched site and the connection state, so it refreshes on each of those events
+        coordinator.attachWidget(widgetEngine, mainExecutor);
+        restoreWatchlist();
+        restoreSnapshot();
+        mainHandler.postDelayed(watchlistRescore, ForecastCoordinator.WATCHLIST_RESCORE_INTERVAL);
+        if (checkConnected()) {
+            requestProbabilityArray();
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            //a pending job, which may be the one that started this service, is left alone
+            ForecastJobService.ensureScheduled(this);
         }
 
+        sensorFusion = new SensorFusion((SensorManager) getSystemService(Context.SENSOR_SERVICE), metrics, eventBus);
+
         createNotificationChannel();
+        watchConnectivity();
+
+    }
+
+    //Stops the sensors and shuts down the parse and disk threads once the service is destroyed
+    @Override
+    public void onDestroy() {
+        sensorFusion.setMode(SensorFusion.MODE_OFF);
+        if (networkCallback != null) {
+            cm.unregisterNetworkCallback(networkCallback);
+        }
+        //responses still in flight would otherwise arrive after the pipeline has stopped
+        transport.cancelAll();
+        pipeline.shutdown();
+        //a refresh still in its coalescing window is pushed now, or a background fetch would never reach the widget
+        widgetEngine.stop();
+        mainHandler.removeCallbacks(metricsDump);
+        mainHandler.removeCallbacks(watchlistRescore);
+        dumpMetrics();
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    historyStore.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        diskExecutor.shutdown();
+        super.onDestroy();
+    }
+
+    //Publishes the connection state now, and again whenever it changes. The network callback needs Lollipop; before
+    //that the state is only published once.
+    private void watchConnectivity() {
+        publishedConnected = checkConnected();
+        publishedUnmetered = !cm.isActiveNetworkMetered();
+        eventBus.publish(new ConnectivityChanged(publishedConnected, publishedUnmetered));
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        networkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                publishConnectivity();
+            }
+
+            @Override
+            public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+                publishConnectivity();
+            }
+
+            @Override
+            public void onLost(Network network) {
+                publishConnectivity();
+            }
+        };
+        cm.registerNetworkCallback(new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET).build(), networkCallback);
+    }
+
+    //Called on the connectivity callback thread; publishes only actual changes
+    private void publishConnectivity() {
+        boolean connected = checkConnected();
+        boolean unmetered = !cm.isActiveNetworkMetered();
+        if (connected != publishedConnected || unmetered != publishedUnmetered) {
+            publishedConnected = connected;
+            publishedUnmetered = unmetered;
+            eventBus.publish(new ConnectivityChanged(connected, unmetered));
+        }
+    }
 
+    //returns the bus carrying ForecastUpdated, LocalProbabilityChanged, WatchlistUpdated, MagFieldSample and ConnectivityChanged events
+    public EventBus getEventBus() {
+        return eventBus;
+    }
+
+    //Loads the persisted watchlist, which sets up an alert rule for each watched site
+    private void restoreWatchlist() {
+        coordinator.setWatchlist(Watchlist.decode(preferences.getString("watchlist", null)));
+    }
+
+    //Loads the last persisted forecast and location so the widget and activity have a value before the first network response.
+    //Reading the file and building the snapshot's index run on the disk thread; the pipeline publishes the snapshot to
+    //the main thread, and the last location is looked up and any refresh requested meanwhile started there after it.
+    private void restoreSnapshot() {
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                AuroraGrid restored = snapshotStore.load();
+                boolean located = false;
+                if (restored != null) {
+                    restoredObservationTime = restored.getObservationTime();
+                    pipeline.restore(restored, preferences.getString("forecast.etag", null),
+                            preferences.getString("forecast.lastModified", null));
+                    located = preferences.contains("lastLatitude");
+                }
+                final boolean lookUp = located;
+                final double longitude = Double.longBitsToDouble(preferences.getLong("lastLongitude", 0));
+                final double latitude = Double.longBitsToDouble(preferences.getLong("lastLatitude", 0));
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        restoring = false;
+                        //a location reported meanwhile is newer
+                        if (lookUp && Double.isNaN(coordinator.getLastLatitude())) {
+                            findProbability(longitude, latitude);
+                        }
+                        if (refreshAfterRestore) {
+                            refreshAfterRestore = false;
+                            requestProbabilityArray();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    //Persists a new forecast, and the location it was last read at, off the main thread. The grid response's validators
+    //are stored once the forecast is on disk, so they are never restored with an older forecast than the one they describe.
+    private void saveSnapshot(final AuroraGrid forecast) {
+        if (savedObservationTime != 0 && forecast.getObservationTime() == savedObservationTime) {
+            return;
+        }
+        savedObservationTime = forecast.getObservationTime();
+        double lastLongitude = coordinator.getLastLongitude();
+        double lastLatitude = coordinator.getLastLatitude();
+        if (!Double.isNaN(lastLatitude)) {
+            preferences.edit()
+                    .putLong("lastLongitude", Double.doubleToRawLongBits(lastLongitude))
+                    .putLong("lastLatitude", Double.doubleToRawLongBits(lastLatitude))
+                    .apply();
+        }
+        final String etag = pipeline.getForecastEtag();
+        final String lastModified = pipeline.getForecastLastModified();
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    snapshotStore.save(forecast);
+                    preferences.edit()
+                            .putString("forecast.etag", etag)
+                            .putString("forecast.lastModified", lastModified)
+                            .apply();
+                    historyStore.append(forecast);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        if (!Double.isNaN(lastLatitude)) {
+            updateTrend(lastLongitude, lastLatitude,
+                    AuroraGrid.index((int) Math.round(lastLongitude), (int) Math.round(lastLatitude)));
+        }
     }
 
     //The on start command is given responsibility to both handle the app's widget and periodic mobile alerts.
-    @RequiresApi(api = Build.VERSION_CODES.M)
+    //Before Lollipop it is started by the widget alarm, which the WidgetRefreshEngine reschedules on every tick.
+    //From Lollipop on fetches run as ForecastJobService jobs, so an alarm left over from an older version is retired.
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            WidgetAlarm.cancel(this);
+            ForecastJobService.ensureScheduled(this);
+            return super.onStartCommand(intent, flags, startId);
+        }
 
-
-        RemoteViews view = new RemoteViews(getPackageName(), R.layout.appwidget);
+        //each alarm tick refreshes the forecast; unchanged data costs at most a 304
         if (checkConnected()) {
-            view.setTextViewText(R.id.widgetText, "Latest local aurora probability: "+latestProbability+"%");
-        } else {
-            view.setTextViewText(R.id.widgetText, "Disconnected, reconnect for aurora probability");
+            requestProbabilityArray();
         }
 
-        ComponentName theWidget = new ComponentName(this, AuroraWidgetProvider.class);
-        AppWidgetManager manager = AppWidgetManager.getInstance(this);
-        manager.updateAppWidget(theWidget, view);
-        //The alert is triggered if the probability is more than 10%
-        if(latestProbability > 10){
-            alert(latestProbability);
-        }
+        WidgetAlarm.schedule(this, widgetEngine.onAlarm());
         return super.onStartCommand(intent, flags, startId);
     }
 
-    //Method for handling sensor accuracy changes. In this case, nothing is needed to be done, but implementing this method is a requirement. 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    //Runs a refresh for a fetch job. done is called on the main thread once the refresh has an outcome.
+    public void refreshForJob(Runnable done) {
+        pendingJobs.add(done);
+        if (checkConnected()) {
+            requestProbabilityArray();
+        } else {
+            prefetchScheduler.onFailure();
+            finishRefresh();
+        }
+    }
 
+    //Releases the jobs waiting for this refresh, then schedules the next fetch job. Scheduling the job id while a job
+    //with it is still running would make JobScheduler stop that job, so the jobs are finished first.
+    private void finishRefresh() {
+        List<Runnable> done = new ArrayList<>(pendingJobs);
+        pendingJobs.clear();
+        for (Runnable callback : done) {
+            callback.run();
+        }
+        scheduleNextFetch();
     }
 
-    //callback method responsible for handling when the sensor values update
-    @Override
-    public void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-            System.arraycopy(event.values, 0, accelerometerReading,
-                    0, accelerometerReading.length);
-        } else if (event.sensor.getType() == Sensor.TYPE_MAGNETIC_FIELD) {
-            System.arraycopy(event.values, 0, magnetometerReading,
-                    0, magnetometerReading.length);
-            magField = (int) event.values[0];
+    //Schedules the next fetch for when the PrefetchScheduler expects new data. The job waits for an unmetered network
+    //until the later metered deadline has passed. Before Lollipop the widget alarm drives fetching instead.
+    private void scheduleNextFetch() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
         }
-        updateOrientationAngles();
+        boolean charging = isCharging();
+        ForecastJobService.schedule(this, prefetchScheduler.nextFetchDelay(true, charging),
+                prefetchScheduler.nextFetchDelay(false, charging));
+    }
+
+    //returns true if the phone is plugged in, read from the sticky battery broadcast
+    private boolean isCharging() {
+        Intent battery = registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
     }
 
     //Creates a notification channel with LED functionality for probability notifications
@@ -175,98 +551,210 @@ public class ProbabilityNetworkService extends Service implements SensorEventLis
         }
     }
 
-    //Turns sensor readings from the positional sensors into an azimuth value that can be used to orient the map according to angle to north
-    private void updateOrientationAngles() {
-        SensorManager.getRotationMatrix(rotationMatrix, null,
-                accelerometerReading, magnetometerReading);
+    //returns the processed azimuth value, computed from the latest filtered sensor readings
+    public double getAzimuth(){
+        return sensorFusion.getAzimuth();
+    }
+
+    //checks whether the phone has a working internet connection. Used to prevent network requests without network access.
+    //From Marshmallow on a network only counts once the system has validated that it actually reaches the internet,
+    //so a captive portal or a network still connecting does not trigger a doomed request.
+    public boolean checkConnected() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            Network network = cm.getActiveNetwork();
+            NetworkCapabilities capabilities = network != null ? cm.getNetworkCapabilities(network) : null;
+            return capabilities != null
+                    && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        }
+        NetworkInfo info = cm.getActiveNetworkInfo();
+        return info != null && info.isConnected();
+    }
 
 
-        SensorManager.getOrientation(rotationMatrix, orientationAngles);
-        azimuthValue = orientationAngles[0] / Math.PI * 180;
-        if (azimuthValue < 0) {
-            azimuthValue = 180 + (azimuthValue + 180);
+    //requests the NOAA OVATION feed containing the probabilities of an aurora at all longitudes and latitudes on earth.
+    //The fetch is conditional, so a forecast that has not changed since the last request is neither downloaded nor parsed again.
+    //At start-up it is held back until the persisted forecast has been restored.
+    private void requestProbabilityArray() {
+        if (restoring) {
+            refreshAfterRestore = true;
+            return;
         }
+        pipeline.refresh();
     }
 
+    //Fills times/values with the probability at the location for every stored forecast since the given time, oldest first,
+    //and returns how many entries were written. Reads the disk and waits out compaction, so never call it on the main thread.
+    public int getProbabilityHistory(double longitude, double latitude, long since, long[] times, double[] values) {
+        return historyStore.probabilityHistory(latitude, longitude, since, times, values);
+    }
 
-    //returns the processed azimuth value
-    public double getAzimuth(){
-        return azimuthValue;
+    //Computes, on the disk thread, how much the probability at the location has changed over the last hour of stored
+    //forecasts, in percentage points, and hands it to the coordinator. Queued behind the store's open and any pending
+    //append, so it sees them both.
+    private void updateTrend(final double longitude, final double latitude, final int cell) {
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ForecastSnapshot current = pipeline.getSnapshot();
+                if (current == null) {
+                    return;
+                }
+                long now = current.getGrid().getObservationTime();
+                int n = historyStore.probabilityHistory(latitude, longitude, now - TREND_WINDOW, trendTimes, trendValues);
+                final int trend = n < 2 ? 0 : (int) Math.round(trendValues[n - 1] - trendValues[0]);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        coordinator.publishTrend(cell, trend);
+                    }
+                });
+            }
+        });
     }
 
-    //checks whether the phone is connected to the network. Used to prevent network requests without network access
-    @RequiresApi(api = Build.VERSION_CODES.M)
-    public boolean checkConnected() {
-        if (cm.getActiveNetwork() != null) {
-            return true;
+    //returns the latest published forecast snapshot, or null if there is none yet
+    public ForecastSnapshot getSnapshot() {
+        return pipeline.getSnapshot();
+    }
+
+    //Returns the grid index (see AuroraGrid.index) of the cell with the highest probability within radiusKm of the
+    //location, the nearest one among equals, or -1 if there is no forecast yet
+    public int findBestSpot(double longitude, double latitude, double radiusKm) {
+        ForecastSnapshot current = pipeline.getSnapshot();
+        if (current == null) {
+            return -1;
         }
-        return false;
+        return current.getIndex().bestWithin(latitude, longitude, radiusKm);
+    }
 
+    //Given a longitude and latitude, this method finds the probability of aurora at that location in the retrieved grid,
+    //or -1 if there is none yet. The result, and the trend once it is known, are published as LocalProbabilityChanged events.
+    public int findProbability(double longitude, double latitude) {
+        return coordinator.findProbability(longitude, latitude);
     }
 
+    //Adds or replaces an alert rule, keeping the alert state of a replaced rule. A new rule picks up the state
+    //persisted for its id, so alerts are not repeated after the process has been restarted.
+    public void setAlertRule(AlertRule rule) {
+        coordinator.setAlertRule(rule);
+    }
 
-    //requests a JSON object from the NOAA website containing an array of probabilities of an aurora at all longitudes and latitudes on earth
-    private void requestProbabilityArray() {
+    //Restores the alert state persisted for a newly added rule
+    private void restoreAlertState(AlertRule rule) {
+        String key = "alert." + rule.getId();
+        if (!preferences.contains(key + ".at")) {
+            return;
+        }
+        AlertEngine alertEngine = coordinator.getAlertEngine();
+        if (preferences.contains(key + ".probability")) {
+            //State persisted before rules were judged on the viewing score. Only the cooldown carries over; the rule
+            //is judged afresh on the score once it has passed.
+            alertEngine.restoreState(rule.getId(), false, preferences.getLong(key + ".at", 0), 0);
+            preferences.edit().remove(key + ".probability").remove(key + ".raised").apply();
+            return;
+        }
+        alertEngine.restoreState(rule.getId(), preferences.getBoolean(key + ".raised", false),
+                preferences.getLong(key + ".at", 0), preferences.getInt(key + ".score", 0));
+    }
 
-        object = new JSONObject();
-        try {
-            object.accumulate("token", "VMWJBjJqqYcMtvEvYcxtovtoADErmeul");
-        } catch (JSONException e) {
-            e.printStackTrace();
+    //Persists the alert state of every rule after an evaluation
+    private void saveAlertState() {
+        AlertEngine alertEngine = coordinator.getAlertEngine();
+        SharedPreferences.Editor editor = preferences.edit();
+        for (int i = 0; i < alertEngine.size(); i++) {
+            String key = "alert." + alertEngine.getRule(i).getId();
+            editor.putBoolean(key + ".raised", alertEngine.isRaised(i))
+                    .putLong(key + ".at", alertEngine.getLastAlertAt(i))
+                    .putInt(key + ".score", alertEngine.getLastAlertScore(i));
         }
-        JsonObjectRequest jsonObjectRequest = new JsonObjectRequest
-                (Request.Method.GET, url, object, new Response.Listener<JSONObject>() {
+        editor.apply();
+    }
 
-                    @Override
-                    public void onResponse(JSONObject response) {
-                        object = response;
-                    }
-                }, new Response.ErrorListener() {
+    //removes the alert rule with the given id
+    public void removeAlertRule(String id) {
+        coordinator.removeAlertRule(id);
+    }
 
-                    @Override
-                    public void onErrorResponse(VolleyError error) {
+    //Adds a site to the watchlist, or moves the site with the same name, and samples it from the current forecast
+    public void addWatchedSite(WatchedSite site) {
+        coordinator.addWatchedSite(site);
+        saveWatchlist();
+    }
+
+    //removes the named site from the watchlist
+    public void removeWatchedSite(String name) {
+        coordinator.removeWatchedSite(name);
+        saveWatchlist();
+    }
+
+    private void saveWatchlist() {
+        preferences.edit().putString("watchlist", coordinator.getWatchlist().encode()).apply();
+    }
 
+    //returns the service's metrics registry
+    public Metrics getMetrics() {
+        return metrics;
+    }
 
+    //Appends the current metrics to the dump file off the main thread, one JSON object per line.
+    //Rates, such as sensor events per second, follow from the difference between consecutive lines.
+    private void dumpMetrics() {
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (metricsFile.length() > METRICS_FILE_LIMIT) {
+                    metricsFile.renameTo(new File(metricsFile.getPath() + ".1"));
+                }
+                try {
+                    Writer out = new FileWriter(metricsFile, true);
+                    try {
+                        metrics.writeJson(out, System.currentTimeMillis());
+                    } finally {
+                        out.close();
                     }
-                });
-        queue.add(jsonObjectRequest);
-    }
-
-    //Given a longitude and latitude, this method finds the probability of aurora at that location in the retrieved JSON array
-    public int findProbability(int longitude, int latitude) {
-        if (object != null) {
-            try {
-                if (longitude < 0)
-                    longitude = 180 - longitude;
-                latestProbability =  (int) ((JSONArray) object.getJSONArray("coordinates").get(longitude * 181 + 90 + latitude)).get(2);
-                return latestProbability;
-            } catch (JSONException e) {
-                e.printStackTrace();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
-        }
+        });
+    }
 
-        return -1;
+    //returns the current watchlist
+    public Watchlist getWatchlist() {
+        return coordinator.getWatchlist();
+    }
+
+    //returns the probabilities of all watched sites for the latest forecast, in watchlist order
+    public WatchlistResult getWatchlistResult() {
+        return coordinator.getWatchlistResult();
     }
 
     //returns a reading of the magnetic field sensor
     public int magReading(){
-        return magField;
+        return (int) sensorFusion.getMagneticField();
+    }
+
+    //returns true if the recent magnetometer history shows local interference, such as nearby metal or an uncalibrated sensor
+    public boolean hasMagneticInterference() {
+        return sensorFusion.getMagnetometerHistory().hasInterference();
     }
 
-    //Method for sending a vibration LED alert
-    private void alert(int probability) {
+    //Method for sending a vibration LED alert. Each rule posts under its own notification id, so alerts for
+    //different locations do not replace each other; the notification defaults already include the vibration.
+    private void alert(AlertRule rule, int score) {
         NotificationCompat.Builder builder = new NotificationCompat.Builder(this, "CHAN")
                 .setSmallIcon(R.drawable.ic_launcher_background)
                 .setContentTitle("Aurora alert")
-                .setContentText("Aurora probability at: " + probability + "%")
+                .setContentText("Aurora viewing score: " + score + "%"
+                        + (hasMagneticInterference() ? ", compass affected by magnetic interference" : ""))
                 .setLights(0xff00ff00, 300, 100)
                 .setDefaults(Notification.DEFAULT_VIBRATE | Notification.DEFAULT_LIGHTS | Notification.DEFAULT_SOUND)
                 .setPriority(NotificationCompat.PRIORITY_DEFAULT);
 
         NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
-        notificationManager.notify(2, builder.build());
-        Vibrator vibrator = (Vibrator) getSystemService(Context.VIBRATOR_SERVICE);
-        vibrator.vibrate(500);
+        int id = ForecastCoordinator.CURRENT_LOCATION_RULE.equals(rule.getId()) ? 2 : rule.getId().hashCode();
+        notificationManager.notify(id, builder.build());
 
     }
 
@@ -0,0 +1,138 @@
+package com.example.aurora;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Build;
+
+//Owns the accelerometer and magnetometer registrations and fuses them into a compass azimuth.
+//Raw vectors are low-pass filtered as they arrive, but the heading is only computed, by Orientation, when
+//getAzimuth() is called after new samples came in. The sampling rate follows the mode: UI rate while the map is on
+//screen, batched normal rate while a client is bound in the background, and no sensors at all otherwise.
+//At most four times a second the latest reading and heading are published on the EventBus as a MagFieldSample.
+//Events are delivered on, and all methods must be called from, the main thread.
+public class SensorFusion implements SensorEventListener {
+
+    public static final int MODE_OFF = 0;
+    public static final int MODE_LOW_POWER = 1;
+    public static final int MODE_INTERACTIVE = 2;
+
+    //Weight of each new sample in the low-pass filter
+    static final float FILTER_ALPHA = 0.15f;
+    //How long the sensor hub may batch events in low power mode before waking the application processor
+    static final int MAX_REPORT_LATENCY_US = 5 * 1000 * 1000;
+    //Minimum spacing of published MagFieldSample events; the display cannot use more
+    static final long SAMPLE_EVENT_INTERVAL_NS = 250 * 1000 * 1000;
+
+    private final SensorManager sensorManager;
+    private final Sensor accelerometer;
+    private final Sensor magnetometer;
+
+    private final float[] gravity = new float[3];
+    private final float[] geomagnetic = new float[3];
+    private final MagnetometerRingBuffer magnetometerHistory = new MagnetometerRingBuffer();
+    private final Metrics metrics;
+    private final EventBus eventBus;
+    private long lastSampleEvent = -SAMPLE_EVENT_INTERVAL_NS;
+
+    private boolean hasGravity = false;
+    private boolean hasGeomagnetic = false;
+    private boolean dirty = false;
+    private double azimuth = 0;
+    private float magneticField = 0;
+    private int mode = MODE_OFF;
+
+    public SensorFusion(SensorManager sensorManager, Metrics metrics, EventBus eventBus) {
+        this.sensorManager = sensorManager;
+        this.metrics = metrics;
+        this.eventBus = eventBus;
+        accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        magnetometer = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+    }
+
+    //Switches the sampling mode, re-registering the sensors only if the mode actually changed
+    public void setMode(int mode) {
+        if (mode == this.mode) {
+            return;
+        }
+        sensorManager.unregisterListener(this);
+        this.mode = mode;
+        if (mode != MODE_OFF) {
+            register(accelerometer);
+            register(magnetometer);
+        }
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    private void register(Sensor sensor) {
+        if (sensor == null) {
+            return;
+        }
+        if (mode == MODE_INTERACTIVE) {
+            sensorManager.registerListener(this, sensor, SensorManager.SENSOR_DELAY_UI);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            sensorManager.registerListener(this, sensor, SensorManager.SENSOR_DELAY_NORMAL, MAX_REPORT_LATENCY_US);
+        } else {
+            sensorManager.registerListener(this, sensor, SensorManager.SENSOR_DELAY_NORMAL);
+        }
+    }
+
+    //Method for handling sensor accuracy changes. Nothing needs to be done here.
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+
+    }
+
+    //Folds each new reading into the filtered vectors and marks the orientation as stale
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        metrics.increment(Metrics.SENSOR_EVENTS);
+        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
+            filter(event.values, gravity, hasGravity);
+            hasGravity = true;
+        } else if (event.sensor.getType() == Sensor.TYPE_MAGNETIC_FIELD) {
+            filter(event.values, geomagnetic, hasGeomagnetic);
+            hasGeomagnetic = true;
+            magnetometerHistory.add(event.timestamp, event.values[0], event.values[1], event.values[2]);
+            magneticField = (float) magnetometerHistory.latestMagnitude();
+        }
+        dirty = true;
+        if (event.timestamp - lastSampleEvent >= SAMPLE_EVENT_INTERVAL_NS && hasGeomagnetic) {
+            lastSampleEvent = event.timestamp;
+            eventBus.publish(new MagFieldSample(event.timestamp, magneticField, getAzimuth(), magnetometerHistory.hasInterference()));
+        }
+    }
+
+    private static void filter(float[] values, float[] filtered, boolean seeded) {
+        for (int i = 0; i < 3; i++) {
+            filtered[i] = seeded ? filtered[i] + FILTER_ALPHA * (values[i] - filtered[i]) : values[i];
+        }
+    }
+
+    //Returns the azimuth in degrees clockwise from north (0-360), recomputing it only if new samples have arrived
+    public double getAzimuth() {
+        if (dirty && hasGravity && hasGeomagnetic) {
+            dirty = false;
+            double heading = Orientation.azimuth(gravity, geomagnetic);
+            //in free fall or with the field pointing straight along gravity the last heading is kept
+            if (!Double.isNaN(heading)) {
+                azimuth = heading;
+            }
+        }
+        return azimuth;
+    }
+
+    //returns the recent raw magnetometer samples and their streaming statistics
+    public MagnetometerRingBuffer getMagnetometerHistory() {
+        return magnetometerHistory;
+    }
+
+    //returns the magnitude of the latest magnetic field reading, in microtesla
+    public float getMagneticField() {
+        return magneticField;
+    }
+}
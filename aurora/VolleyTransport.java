@@ -0,0 +1,55 @@
+package com.example.aurora;
+
+import android.content.Context;
+
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.Volley;
+
+//HttpTransport backed by Volley. All requests share one process-wide RequestQueue, bypass its disk cache, and
+//callbacks are delivered on the main thread. Requests are tagged with their transport, so one owner's requests can be
+//cancelled without touching the rest of the queue.
+public class VolleyTransport implements HttpTransport {
+
+    private static RequestQueue sharedQueue;
+
+    private final RequestQueue queue;
+
+    //returns the request queue shared by the whole process, creating it on first use
+    public static synchronized RequestQueue getRequestQueue(Context context) {
+        if (sharedQueue == null) {
+            sharedQueue = Volley.newRequestQueue(context.getApplicationContext());
+        }
+        return sharedQueue;
+    }
+
+    public VolleyTransport(RequestQueue queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public void get(String url, String etag, String lastModified, final Callback callback) {
+        final OvationRequest[] request = new OvationRequest[1];
+        request[0] = new OvationRequest(url, etag, lastModified, new Response.Listener<byte[]>() {
+
+            @Override
+            public void onResponse(byte[] response) {
+                callback.onResponse(response, request[0].getResponseEtag(), request[0].getResponseLastModified());
+            }
+        }, new Response.ErrorListener() {
+
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                callback.onFailure(error);
+            }
+        });
+        request[0].setTag(this);
+        queue.add(request[0]);
+    }
+
+    //Cancels every request of this transport that has not completed; their callbacks are never called
+    public void cancelAll() {
+        queue.cancelAll(this);
+    }
+}
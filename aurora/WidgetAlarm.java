@@ -0,0 +1,32 @@
+package com.example.aurora;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+
+//The alarm that starts the service for widget refreshes before Lollipop, one tick at a time. The delay to each next
+//tick comes from WidgetRefreshEngine.onAlarm.
+final class WidgetAlarm {
+
+    private WidgetAlarm() {
+    }
+
+    //Schedules a single non-wakeup alarm that starts the service after the given delay, replacing any pending one
+    static void schedule(Context context, long delayMillis) {
+        AlarmManager manager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        manager.set(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + delayMillis, alarmIntent(context));
+    }
+
+    //cancels the pending alarm, if there is one
+    static void cancel(Context context) {
+        AlarmManager manager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        manager.cancel(alarmIntent(context));
+    }
+
+    private static PendingIntent alarmIntent(Context context) {
+        Intent i = new Intent(context, ProbabilityNetworkService.class);
+        return PendingIntent.getService(context, 0, i, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.aurora;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//Building the per-forecast GridIndex, and its best-spot query against a scan of every cell in range
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IndexBenchmark {
+
+    @Param({"200", "1000", "5000"})
+    public double radiusKm;
+
+    //Edinburgh, south of the synthetic oval
+    private double latitude = 55.95;
+    private double longitude = -3.19;
+
+    private AuroraGrid grid;
+    private GridIndex index;
+
+    @Setup
+    public void setUp() throws IOException {
+        grid = OvationFixture.grid(OvationFixture.document());
+        index = new GridIndex(grid);
+    }
+
+    @Benchmark
+    public GridIndex build() {
+        return new GridIndex(grid);
+    }
+
+    @Benchmark
+    public int bestWithin() {
+        return index.bestWithin(latitude, longitude, radiusKm);
+    }
+
+    @Benchmark
+    public int scan() {
+        int best = -1;
+        int bestProbability = -1;
+        for (int i = 0; i < AuroraGrid.CELLS; i++) {
+            int probability = grid.cell(i);
+            if (probability > bestProbability
+                    && GridIndex.distanceKm(latitude, longitude, GridIndex.latitudeOf(i), GridIndex.longitudeOf(i)) <= radiusKm) {
+                best = i;
+                bestProbability = probability;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.aurora;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+//Single-location probability lookups, as findProbability does on each location update
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LookupBenchmark {
+
+    //Tromso, inside the synthetic oval
+    private double latitude = 69.65;
+    private double longitude = 18.96;
+
+    private JSONObject object;
+    private AuroraGrid grid;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] document = OvationFixture.document();
+        object = new JSONObject(new String(document, StandardCharsets.UTF_8));
+        grid = OvationFixture.grid(document);
+    }
+
+    //the original findProbability, indexing straight into the org.json tree
+    @Benchmark
+    public int orgJsonCell() {
+        int lon = (int) longitude;
+        int lat = (int) latitude;
+        return (int) ((JSONArray) object.getJSONArray("coordinates").get(lon * 181 + 90 + lat)).get(2);
+    }
+
+    @Benchmark
+    public int gridCell() {
+        return grid.probability((int) longitude, (int) latitude);
+    }
+
+    @Benchmark
+    public double gridBilinear() {
+        return grid.probabilityAt(latitude, longitude);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.aurora;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+//Supplies the OVATION document the benchmarks run on. The aurora.ovation system property points at a recorded NOAA
+//document; without it a synthetic one of the same shape and size is generated, with an auroral oval around both poles.
+final class OvationFixture {
+
+    static final String PROPERTY = "aurora.ovation";
+    //2021-07-22T10:15:00Z
+    static final long OBSERVATION_TIME = 1626948900000L;
+
+    private OvationFixture() {
+    }
+
+    static byte[] document() throws IOException {
+        String path = System.getProperty(PROPERTY);
+        if (path != null) {
+            return Files.readAllBytes(Paths.get(path));
+        }
+        return SyntheticOvation.document(OBSERVATION_TIME, 60).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static AuroraGrid grid(byte[] document) throws IOException {
+        return new OvationParser().parse(new ByteArrayInputStream(document));
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.aurora;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+//Decoding a whole OVATION document: the org.json tree the service used to build, against the streaming OvationParser
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParseBenchmark {
+
+    private byte[] document;
+    private AuroraGrid known;
+    private final OvationParser parser = new OvationParser();
+
+    @Setup
+    public void setUp() throws IOException {
+        document = OvationFixture.document();
+        known = OvationFixture.grid(document);
+    }
+
+    //what Volley's JsonObjectRequest did on every response
+    @Benchmark
+    public JSONObject orgJson() {
+        return new JSONObject(new String(document, StandardCharsets.UTF_8));
+    }
+
+    //the org.json tree, flattened into a grid so the result matches what the app stores
+    @Benchmark
+    public byte[] orgJsonToGrid() {
+        JSONArray coordinates = new JSONObject(new String(document, StandardCharsets.UTF_8)).getJSONArray("coordinates");
+        byte[] cells = new byte[AuroraGrid.CELLS];
+        for (int i = 0; i < coordinates.length(); i++) {
+            JSONArray point = coordinates.getJSONArray(i);
+            cells[AuroraGrid.index(point.getInt(0), point.getInt(1))] = (byte) point.getInt(2);
+        }
+        return cells;
+    }
+
+    @Benchmark
+    public AuroraGrid streaming() throws IOException {
+        return parser.parse(new ByteArrayInputStream(document));
+    }
+
+    //a download of the forecast already held, which the parser gives up on once it has read both times
+    @Benchmark
+    public AuroraGrid streamingUnchanged() throws IOException {
+        return parser.parse(new ByteArrayInputStream(document), known);
+    }
+}
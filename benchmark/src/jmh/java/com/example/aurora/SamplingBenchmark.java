@@ -0,0 +1,89 @@
+package com.example.aurora;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Sampling many locations from one forecast: one lookup per site, the batch lookup, the precomputed GridSampler
+//and a whole Watchlist as the service samples it on every new forecast. viewingScore forces the sun and moon to be
+//placed on every call, the cost paid once per ViewingScorer interval, while watchlist hits the cached factors.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SamplingBenchmark {
+
+    @Param({"1", "16", "256"})
+    public int sites;
+
+    private AuroraGrid grid;
+    private ForecastSnapshot snapshot;
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] out;
+    private GridSampler sampler;
+    private Watchlist watchlist;
+    private ViewingScorer scorer;
+    private double[] scores;
+    private long time;
+
+    @Setup
+    public void setUp() throws IOException {
+        grid = OvationFixture.grid(OvationFixture.document());
+        snapshot = new ForecastSnapshot(grid, 1, 0);
+        Random random = new Random(42);
+        latitudes = new double[sites];
+        longitudes = new double[sites];
+        out = new double[sites];
+        watchlist = Watchlist.EMPTY;
+        for (int i = 0; i < sites; i++) {
+            latitudes[i] = 50 + random.nextDouble() * 25;
+            longitudes[i] = random.nextDouble() * 360 - 180;
+            watchlist = watchlist.with(new WatchedSite("site" + i, latitudes[i], longitudes[i]));
+        }
+        sampler = new GridSampler(latitudes, longitudes);
+        scorer = new ViewingScorer(latitudes, longitudes);
+        scores = new double[sites];
+        time = 1700000000000L;
+    }
+
+    @Benchmark
+    public double[] perSite() {
+        for (int i = 0; i < sites; i++) {
+            out[i] = grid.probabilityAt(latitudes[i], longitudes[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] batch() {
+        grid.probabilityAt(latitudes, longitudes, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] sampler() {
+        sampler.sample(grid, out);
+        return out;
+    }
+
+    @Benchmark
+    public WatchlistResult watchlist() {
+        return watchlist.sample(snapshot, 1700000000000L);
+    }
+
+    @Benchmark
+    public double[] viewingScore() {
+        time += ViewingScorer.INTERVAL;
+        scorer.score(grid, time, out, scores);
+        return scores;
+    }
+}
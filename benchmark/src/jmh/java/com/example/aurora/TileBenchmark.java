@@ -0,0 +1,44 @@
+package com.example.aurora;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//Rasterizing one heatmap tile over northern Scandinavia at a few zoom levels
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TileBenchmark {
+
+    @Param({"2", "5", "8"})
+    public int zoom;
+
+    private AuroraGrid grid;
+    private int x;
+    private int y;
+    private final TileRasterizer rasterizer = new TileRasterizer();
+    private final int[] pixels = new int[TileRasterizer.TILE_SIZE * TileRasterizer.TILE_SIZE];
+
+    @Setup
+    public void setUp() throws IOException {
+        grid = OvationFixture.grid(OvationFixture.document());
+        double tiles = 1 << zoom;
+        x = (int) ((18.96 + 180) / 360 * tiles);
+        double latitude = Math.toRadians(69.65);
+        y = (int) ((1 - Math.log(Math.tan(latitude) + 1 / Math.cos(latitude)) / Math.PI) / 2 * tiles);
+    }
+
+    @Benchmark
+    public int[] rasterize() {
+        rasterizer.rasterize(grid, x, y, zoom, pixels);
+        return pixels;
+    }
+}
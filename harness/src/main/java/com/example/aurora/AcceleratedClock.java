@@ -0,0 +1,35 @@
+package com.example.aurora;
+
+//Simulated wall clock that starts at a fixed time and runs speed times faster than real time, so hours of forecasts,
+//location fixes and sensor readings replay in seconds. Code under test only sees it as a Clock; the harness converts
+//simulated delays back to real ones when it schedules work.
+final class AcceleratedClock implements Clock {
+
+    private final long start;
+    private final double speed;
+    private final long origin = System.nanoTime();
+
+    AcceleratedClock(long start, double speed) {
+        this.start = start;
+        this.speed = speed;
+    }
+
+    @Override
+    public long now() {
+        return start + (long) ((System.nanoTime() - origin) / 1e6 * speed);
+    }
+
+    //returns the simulated time elapsed since the clock started, in nanoseconds
+    long elapsedNanos() {
+        return (long) ((System.nanoTime() - origin) * speed);
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    //returns the real time, in milliseconds, that passes while the clock advances by the given simulated time
+    long toRealMillis(long simulatedMillis) {
+        return Math.max(0, (long) (simulatedMillis / speed));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.aurora;
+
+import java.util.Random;
+
+//A simulated location trace: fixes at a fixed interval along a great-circle-ish drive between two places, with GPS-like
+//jitter and the occasional stop, as fused location would report them on a road trip north to chase the aurora.
+final class LocationTrace {
+
+    //about 20 m of jitter on every fix
+    private static final double JITTER_DEGREES = 0.0002;
+
+    private final long interval;
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    private LocationTrace(long interval, double[] latitudes, double[] longitudes) {
+        this.interval = interval;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+    }
+
+    //Returns a trace of fixes every interval over the duration, in milliseconds, moving from one place to the other
+    static LocationTrace drive(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude,
+                               long duration, long interval, Random random) {
+        int size = (int) (duration / interval) + 1;
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        double progress = 0;
+        for (int i = 0; i < size; i++) {
+            //stand still for about one fix in five, otherwise cover the distance evenly
+            if (i > 0 && random.nextInt(5) != 0) {
+                progress = Math.min(1, progress + 1.25 / size);
+            }
+            latitudes[i] = fromLatitude + (toLatitude - fromLatitude) * progress + random.nextGaussian() * JITTER_DEGREES;
+            longitudes[i] = fromLongitude + (toLongitude - fromLongitude) * progress + random.nextGaussian() * JITTER_DEGREES;
+        }
+        return new LocationTrace(interval, latitudes, longitudes);
+    }
+
+    //returns the position of the last fix at or before the given time since the trace started
+    int indexAt(long elapsed) {
+        return (int) Math.max(0, Math.min(latitudes.length - 1, elapsed / interval));
+    }
+
+    double getLatitude(int index) {
+        return latitudes[index];
+    }
+
+    double getLongitude(int index) {
+        return longitudes[index];
+    }
+}
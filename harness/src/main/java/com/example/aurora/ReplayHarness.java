@@ -0,0 +1,358 @@
+package com.example.aurora;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//End-to-end replay of the refresh -> parse -> lookup -> widget/alert flow on a plain JVM. For every Scenario it starts
+//a StubNoaaServer, then feeds a ForecastPipeline into the ForecastCoordinator and WidgetRefreshEngine the service
+//uses, with locations from a LocationTrace behind the LocationGate MainActivity uses, on an AcceleratedClock. Sensor
+//batches from a SensorStream go through the magnetometer and orientation math. A single "main" thread receives every
+//callback, as the Android main thread would. Fetches are scheduled by a PrefetchScheduler, so the run also exercises the cadence
+//learning and backoff against the stub's publish schedule and faults.
+//Usage: ReplayHarness [--speed N] [--hours N] [--seed N] [--recorded dir] [--out dir] [--scenarios a,b]
+public final class ReplayHarness {
+
+    //2021-12-01T15:00:00Z, after sunset in northern Scandinavia, so viewing scores and alerts are in play
+    static final long START = 1638370800000L;
+    static final long LOCATION_INTERVAL = 60 * 1000;
+    //real milliseconds between sensor batches
+    static final long SENSOR_TICK = 20;
+    //prefix of the threads that stand in for the app's, whose allocations are reported
+    static final String APP_THREAD = "app-";
+
+    private final Scenario scenario;
+    private final List<String> recorded;
+    private final double speed;
+    private final long duration;
+    private final long seed;
+
+    private final Metrics metrics = new Metrics();
+    private final LocationGate gate = new LocationGate();
+    private final EventBus eventBus = new EventBus();
+    private final MagnetometerRingBuffer magnetometer = new MagnetometerRingBuffer();
+
+    //Only touched on the main thread
+    private AcceleratedClock clock;
+    private ScheduledExecutorService main;
+    private ForecastPipeline pipeline;
+    private ForecastCoordinator coordinator;
+    private WidgetRefreshEngine widgetEngine;
+    private final Map<Runnable, ScheduledFuture<?>> timers = new HashMap<>();
+    private PrefetchScheduler prefetchScheduler;
+    private LocationTrace trace;
+    private SensorStream sensors;
+    private long interferenceSamples = 0;
+    private double lastHeading = Double.NaN;
+
+    private ReplayHarness(Scenario scenario, List<String> recorded, double speed, long duration, long seed) {
+        this.scenario = scenario;
+        this.recorded = recorded;
+        this.speed = speed;
+        this.duration = duration;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        double speed = 720;
+        double hours = 3;
+        long seed = 42;
+        File recordedDirectory = null;
+        File out = new File("build/reports/harness");
+        List<String> names = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--speed":
+                    speed = Double.parseDouble(value);
+                    break;
+                case "--hours":
+                    hours = Double.parseDouble(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--recorded":
+                    recordedDirectory = new File(value);
+                    break;
+                case "--out":
+                    out = new File(value);
+                    break;
+                case "--scenarios":
+                    names = Arrays.asList(value.split(","));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        List<String> recorded = new ArrayList<>();
+        if (recordedDirectory != null) {
+            File[] files = recordedDirectory.listFiles();
+            if (files == null) {
+                throw new IOException("Cannot list " + recordedDirectory);
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.getName().endsWith(".json")) {
+                    recorded.add(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        if (!out.isDirectory() && !out.mkdirs()) {
+            throw new IOException("Cannot create " + out);
+        }
+
+        for (Scenario scenario : Scenario.defaults()) {
+            if (names == null || names.contains(scenario.getName())) {
+                new ReplayHarness(scenario, recorded, speed, (long) (hours * 60 * 60 * 1000), seed).run(out);
+            }
+        }
+    }
+
+    private void run(File out) throws Exception {
+        clock = new AcceleratedClock(START, speed);
+        StubNoaaServer server = new StubNoaaServer(clock, scenario, recorded, seed);
+        server.start();
+        main = Executors.newSingleThreadScheduledExecutor(named(APP_THREAD + "main"));
+        UrlConnectionTransport transport = new UrlConnectionTransport(main, named(APP_THREAD + "network"));
+        prefetchScheduler = new PrefetchScheduler(clock, new Random(seed));
+        Random random = new Random(seed);
+        //from Oslo to Tromso
+        trace = LocationTrace.drive(59.91, 10.75, 69.65, 18.96, duration, LOCATION_INTERVAL, random);
+        sensors = new SensorStream(duration * 1000000L, random);
+
+        List<SpaceWeatherFeed> feeds = Arrays.asList(SpaceWeatherFeed.kp(server.url(StubNoaaServer.KP_PATH)),
+                SpaceWeatherFeed.solarWindMag(server.url(StubNoaaServer.SOLAR_WIND_MAG_PATH)));
+        pipeline = new ForecastPipeline(transport, server.url(StubNoaaServer.OVATION_PATH), feeds, new ForecastPipeline.Listener() {
+
+            @Override
+            public void onSnapshotPublished(ForecastSnapshot snapshot) {
+                coordinator.onSnapshotPublished(snapshot);
+            }
+
+            @Override
+            public void onRefreshUnchanged() {
+                prefetchScheduler.onUnchanged();
+                scheduleRefresh();
+            }
+
+            @Override
+            public void onRefreshFailed(Exception error) {
+                prefetchScheduler.onFailure();
+                scheduleRefresh();
+            }
+
+            @Override
+            public void onFeedFailed(SpaceWeatherFeed feed, Exception error) {
+            }
+        }, metrics, clock, main, named(APP_THREAD + "parse"));
+        //alerts and widget pushes are counted in the metrics by the coordinator and the widget engine themselves
+        coordinator = new ForecastCoordinator(pipeline, eventBus, metrics, clock, new ForecastCoordinator.Host() {
+
+            @Override
+            public void onNewGrid(AuroraGrid grid) {
+                prefetchScheduler.onForecastReceived(grid.getObservationTime());
+                scheduleRefresh();
+            }
+
+            @Override
+            public void requestTrend(double longitude, double latitude, int cell) {
+                //there is no history store here, so the trend stays flat
+            }
+
+            @Override
+            public void onAlertRuleAdded(AlertRule rule) {
+            }
+
+            @Override
+            public void onAlert(AlertRule rule, int score) {
+            }
+
+            @Override
+            public void onAlertsEvaluated() {
+            }
+        });
+        widgetEngine = new WidgetRefreshEngine(coordinator, new WidgetRefreshEngine.Display() {
+            @Override
+            public void push(String text) {
+            }
+        }, new WidgetRefreshEngine.Timer() {
+            @Override
+            public void postDelayed(Runnable task, long delayMillis) {
+                timers.put(task, main.schedule(task, clock.toRealMillis(delayMillis), TimeUnit.MILLISECONDS));
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                ScheduledFuture<?> timer = timers.remove(task);
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+            }
+        }, metrics);
+
+        long started = System.nanoTime();
+        main.execute(new Runnable() {
+            @Override
+            public void run() {
+                coordinator.attachWidget(widgetEngine, main);
+                coordinator.setWatchlist(Watchlist.EMPTY.with(new WatchedSite("Abisko", 68.35, 18.83))
+                        .with(new WatchedSite("Fairbanks", 64.84, -147.72)));
+                pipeline.refresh();
+            }
+        });
+        main.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                onLocation();
+            }
+        }, 0, Math.max(1, clock.toRealMillis(LOCATION_INTERVAL)), TimeUnit.MILLISECONDS);
+        main.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                onSensors();
+            }
+        }, 0, SENSOR_TICK, TimeUnit.MILLISECONDS);
+        long rescore = Math.max(1, clock.toRealMillis(ForecastCoordinator.WATCHLIST_RESCORE_INTERVAL));
+        main.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                coordinator.rescoreWatchlist();
+            }
+        }, rescore, rescore, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(clock.toRealMillis(duration));
+        //read while the app threads are still alive; their allocation counters go with them
+        long allocated = allocatedBytes();
+        main.shutdownNow();
+        main.awaitTermination(10, TimeUnit.SECONDS);
+        pipeline.shutdown();
+        transport.shutdown();
+        server.stop();
+        long elapsed = (System.nanoTime() - started) / 1000000;
+
+        report(server, allocated, elapsed);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(out, scenario.getName() + ".json")), StandardCharsets.UTF_8);
+        try {
+            metrics.writeJson(writer, clock.now());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void scheduleRefresh() {
+        long delay = prefetchScheduler.nextFetchDelay(true, false);
+        main.schedule(new Runnable() {
+            @Override
+            public void run() {
+                pipeline.refresh();
+            }
+        }, clock.toRealMillis(delay), TimeUnit.MILLISECONDS);
+    }
+
+    //Handles the location fix due at the current time as MainActivity does: the fix reaches the coordinator only when
+    //the gate lets it through, and the coordinator recomputes the last one for every new grid
+    private void onLocation() {
+        int i = trace.indexAt(clock.now() - clock.getStart());
+        double latitude = trace.getLatitude(i);
+        double longitude = trace.getLongitude(i);
+        if (gate.accept(latitude, longitude)) {
+            coordinator.findProbability(longitude, latitude);
+        }
+    }
+
+    private void onSensors() {
+        sensors.advanceTo(clock.elapsedNanos(), new SensorStream.Listener() {
+            @Override
+            public void onSample(long timestampNanos, float[] gravity, float[] geomagnetic) {
+                metrics.increment(Metrics.SENSOR_EVENTS);
+                magnetometer.add(timestampNanos, geomagnetic[0], geomagnetic[1], geomagnetic[2]);
+                if (magnetometer.hasInterference()) {
+                    interferenceSamples++;
+                }
+                double heading = Orientation.azimuth(gravity, geomagnetic);
+                if (!Double.isNaN(heading)) {
+                    lastHeading = heading;
+                }
+            }
+        });
+    }
+
+    //Returns the bytes allocated so far by the threads standing in for the app's, or -1 if the JVM cannot tell
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (java.lang.management.ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith(APP_THREAD)) {
+                total += Math.max(0, threads.getThreadAllocatedBytes(info.getThreadId()));
+            }
+        }
+        return total;
+    }
+
+    private void report(StubNoaaServer server, long allocated, long elapsed) {
+        System.out.println(String.format(Locale.US, "scenario %s: %.1f h simulated in %.1f s",
+                scenario.getName(), duration / 3600000.0, elapsed / 1000.0));
+        System.out.println(String.format(Locale.US, "  server     %d requests, %d not modified, %d slow, %d truncated, %d errors, %.1f MB sent",
+                server.getRequests(), server.getNotModified(), server.getSlow(), server.getTruncated(), server.getErrors(),
+                server.getBytesSent() / 1e6));
+        System.out.println(String.format(Locale.US, "  pipeline   %d fetches, %d unchanged, %d failed, %d unparseable, %d snapshots, %.1f MB downloaded",
+                metrics.get(Metrics.FETCHES), metrics.get(Metrics.FETCHES_UNCHANGED), metrics.get(Metrics.FETCH_FAILURES),
+                metrics.get(Metrics.PARSE_FAILURES), metrics.get(Metrics.SNAPSHOTS_PUBLISHED), metrics.get(Metrics.BYTES_DOWNLOADED) / 1e6));
+        printHistogram("fetch ms", Metrics.FETCH_LATENCY_MS);
+        printHistogram("parse us", Metrics.PARSE_TIME_US);
+        printHistogram("lookup ns", Metrics.LOOKUP_LATENCY_NS);
+        printHistogram("stale s", Metrics.SNAPSHOT_AGE_S);
+        System.out.println(String.format(Locale.US, "  app        %d lookups, %d misses, %d widget pushes, %d alerts",
+                metrics.get(Metrics.LOOKUPS), metrics.get(Metrics.LOOKUP_MISSES), metrics.get(Metrics.WIDGET_PUSHES),
+                metrics.get(Metrics.ALERTS)));
+        System.out.println(String.format(Locale.US, "  sensors    %d samples, %d with interference, last heading %.0f",
+                metrics.get(Metrics.SENSOR_EVENTS), interferenceSamples, lastHeading));
+        System.out.println(allocated < 0 ? "  allocated  unknown"
+                : String.format(Locale.US, "  allocated  %.1f MB", allocated / 1e6));
+    }
+
+    private void printHistogram(String label, int histogram) {
+        System.out.println(String.format(Locale.US, "  %-10s p50 %d, p90 %d, p99 %d, max %d (%d samples)", label,
+                metrics.percentile(histogram, 50), metrics.percentile(histogram, 90), metrics.percentile(histogram, 99),
+                metrics.max(histogram), metrics.count(histogram)));
+    }
+
+    private static ThreadFactory named(final String prefix) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
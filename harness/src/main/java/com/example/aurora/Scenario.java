@@ -0,0 +1,62 @@
+package com.example.aurora;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+//How the stub server misbehaves during one harness run: the share of requests answered slowly, with a truncated body
+//or with a server error. Every other request gets a full response, or a 304 when the client's validator is current.
+final class Scenario {
+
+    static final int RESPOND = 0;
+    static final int SLOW = 1;
+    static final int TRUNCATED = 2;
+    static final int ERROR = 3;
+
+    private final String name;
+    private final double slowRate;
+    private final double truncatedRate;
+    private final double errorRate;
+    private final long slowDelay;
+
+    Scenario(String name, double slowRate, double truncatedRate, double errorRate, long slowDelay) {
+        this.name = name;
+        this.slowRate = slowRate;
+        this.truncatedRate = truncatedRate;
+        this.errorRate = errorRate;
+        this.slowDelay = slowDelay;
+    }
+
+    //The scenarios run when none are named on the command line
+    static List<Scenario> defaults() {
+        return Arrays.asList(
+                new Scenario("steady", 0, 0, 0, 0),
+                new Scenario("slow", 0.3, 0, 0, 20 * 1000),
+                new Scenario("flaky", 0, 0.1, 0.2, 0),
+                new Scenario("degraded", 0.2, 0.1, 0.3, 45 * 1000));
+    }
+
+    //Picks how to answer the next request
+    int pick(Random random) {
+        double r = random.nextDouble();
+        if (r < errorRate) {
+            return ERROR;
+        }
+        if (r < errorRate + truncatedRate) {
+            return TRUNCATED;
+        }
+        if (r < errorRate + truncatedRate + slowRate) {
+            return SLOW;
+        }
+        return RESPOND;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    //returns how long a slow response is held back, in simulated milliseconds
+    long getSlowDelay() {
+        return slowDelay;
+    }
+}
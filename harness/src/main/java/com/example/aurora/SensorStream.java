@@ -0,0 +1,50 @@
+package com.example.aurora;
+
+import java.util.Random;
+
+//A simulated accelerometer and magnetometer stream at RATE_HZ: the phone lying flat and turning slowly, in a field of
+//about 52 microtesla with sensor noise. Between a third and half of the run local interference, such as the phone lying
+//near metal, adds a slow swing of a few microtesla, which the MagnetometerRingBuffer should pick up.
+final class SensorStream {
+
+    //Receives every generated sample
+    interface Listener {
+        void onSample(long timestampNanos, float[] gravity, float[] geomagnetic);
+    }
+
+    static final int RATE_HZ = 20;
+    private static final long PERIOD_NANOS = 1000000000L / RATE_HZ;
+
+    private final Random random;
+    private final long duration;
+    private final float[] gravity = {0, 0, 9.81f};
+    private final float[] geomagnetic = new float[3];
+    private long next = 0;
+
+    //duration is the length of the run in simulated nanoseconds
+    SensorStream(long duration, Random random) {
+        this.duration = duration;
+        this.random = random;
+    }
+
+    //Generates every sample due up to the given time since the stream started and returns how many there were
+    int advanceTo(long timestampNanos, Listener listener) {
+        int count = 0;
+        while (next <= timestampNanos) {
+            double seconds = next / 1e9;
+            double heading = Math.toRadians(seconds * 3);
+            double interference = next > duration / 3 && next < duration / 2 ? 4 * Math.sin(seconds / 60) : 0;
+            //horizontal component pointing north, rotated into the device frame by the heading
+            double horizontal = 18 + interference;
+            geomagnetic[0] = (float) (-horizontal * Math.sin(heading) + random.nextGaussian() * 0.3);
+            geomagnetic[1] = (float) (horizontal * Math.cos(heading) + random.nextGaussian() * 0.3);
+            geomagnetic[2] = (float) (-49 + random.nextGaussian() * 0.3);
+            gravity[0] = (float) (random.nextGaussian() * 0.05);
+            gravity[1] = (float) (random.nextGaussian() * 0.05);
+            listener.onSample(next, gravity, geomagnetic);
+            next += PERIOD_NANOS;
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.aurora;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Local stand-in for services.swpc.noaa.gov. A new OVATION forecast is "published" every CADENCE of simulated time,
+//LAG after its observation time, as NOAA does; its body is the next recorded document with the observation and
+//forecast times rewritten, or a SyntheticOvation document for those times. The Kp and solar wind tables are generated from the simulated time.
+//Every response carries an ETag, so a request with a current validator is answered 304. The Scenario decides which
+//requests are instead answered slowly, cut off half way through the body, or with a 503.
+final class StubNoaaServer {
+
+    static final String OVATION_PATH = "/json/ovation_aurora_latest.json";
+    static final String KP_PATH = "/products/noaa-planetary-k-index.json";
+    static final String SOLAR_WIND_MAG_PATH = "/products/solar-wind/mag-5-minute.json";
+
+    static final long CADENCE = 5 * 60 * 1000;
+    static final long LAG = 90 * 1000;
+    private static final long KP_INTERVAL = 3 * 60 * 60 * 1000;
+    private static final long MINUTE = 60 * 1000;
+
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private final AcceleratedClock clock;
+    private final Scenario scenario;
+    private final List<String> recorded;
+    private final Random random;
+    private final SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+    private final SimpleDateFormat tableFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong slow = new AtomicLong();
+    private final AtomicLong truncated = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    //the body of the latest published forecast, built on first request
+    private long cachedForecast = Long.MIN_VALUE;
+    private byte[] cachedBody;
+
+    //recorded holds the text of recorded OVATION documents to cycle through; when empty, synthetic ones are served
+    StubNoaaServer(AcceleratedClock clock, Scenario scenario, List<String> recorded, long seed) throws IOException {
+        this.clock = clock;
+        this.scenario = scenario;
+        this.recorded = recorded;
+        this.random = new Random(seed);
+        isoFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        tableFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    serve(exchange);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    //returns the url of a path on this server
+    String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    //returns the observation time of the forecast published at the given simulated time
+    long observationTime(long now) {
+        return Math.floorDiv(now - LAG, CADENCE) * CADENCE;
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    long getNotModified() {
+        return notModified.get();
+    }
+
+    long getSlow() {
+        return slow.get();
+    }
+
+    long getTruncated() {
+        return truncated.get();
+    }
+
+    long getErrors() {
+        return errors.get();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException, InterruptedException {
+        String path = exchange.getRequestURI().getPath();
+        long now = clock.now();
+        String etag;
+        if (OVATION_PATH.equals(path)) {
+            etag = "\"ovation-" + observationTime(now) + "\"";
+        } else if (KP_PATH.equals(path)) {
+            etag = "\"kp-" + Math.floorDiv(now, KP_INTERVAL) + "\"";
+        } else if (SOLAR_WIND_MAG_PATH.equals(path)) {
+            etag = "\"mag-" + Math.floorDiv(now, MINUTE) + "\"";
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        requests.incrementAndGet();
+
+        int answer;
+        synchronized (random) {
+            answer = scenario.pick(random);
+        }
+        if (answer == Scenario.ERROR) {
+            errors.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            return;
+        }
+        if (answer == Scenario.SLOW) {
+            slow.incrementAndGet();
+            Thread.sleep(clock.toRealMillis(scenario.getSlowDelay()));
+        }
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        byte[] body;
+        if (OVATION_PATH.equals(path)) {
+            body = forecast(observationTime(now));
+        } else if (KP_PATH.equals(path)) {
+            body = kpTable(Math.floorDiv(now, KP_INTERVAL));
+        } else {
+            body = solarWindTable(Math.floorDiv(now, MINUTE));
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        OutputStream out = exchange.getResponseBody();
+        if (answer == Scenario.TRUNCATED) {
+            //chunked, so the client sees a clean end of stream and the parser has to notice the missing half
+            truncated.incrementAndGet();
+            exchange.sendResponseHeaders(200, 0);
+            out.write(body, 0, body.length / 2);
+            bytesSent.addAndGet(body.length / 2);
+        } else {
+            exchange.sendResponseHeaders(200, body.length);
+            out.write(body);
+            bytesSent.addAndGet(body.length);
+        }
+        out.close();
+    }
+
+    private synchronized byte[] forecast(long observation) {
+        if (observation != cachedForecast) {
+            long index = Math.floorDiv(observation, CADENCE);
+            String document;
+            if (recorded.isEmpty()) {
+                //an oval that swells and fades over a few hours
+                document = SyntheticOvation.document(observation, 20 + 70 * Math.pow(Math.sin(index / 24.0), 2));
+            } else {
+                document = recorded.get((int) Math.floorMod(index, (long) recorded.size()))
+                        .replaceFirst("\"Observation Time\"\\s*:\\s*\"[^\"]*\"", "\"Observation Time\": \"" + isoFormat.format(new Date(observation)) + "\"")
+                        .replaceFirst("\"Forecast Time\"\\s*:\\s*\"[^\"]*\"", "\"Forecast Time\": \"" + isoFormat.format(new Date(observation + 30 * MINUTE)) + "\"");
+            }
+            cachedBody = document.getBytes(StandardCharsets.UTF_8);
+            cachedForecast = observation;
+        }
+        return cachedBody;
+    }
+
+    //Rows of the planetary Kp table, one per three hour interval, ending with the given one
+    private synchronized byte[] kpTable(long interval) {
+        StringBuilder json = new StringBuilder("[[\"time_tag\",\"Kp\",\"a_running\",\"station_count\"]");
+        for (long i = interval - 7; i <= interval; i++) {
+            double kp = 2 + 5 * Math.pow(Math.sin(i / 5.0), 2);
+            json.append(",[\"").append(tableFormat.format(new Date(i * KP_INTERVAL))).append("\",\"")
+                    .append(String.format(Locale.US, "%.2f", kp)).append("\",\"").append(Math.round(kp * kp * 3)).append("\",\"8\"]");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    //Rows of the solar wind magnetic field table, one per minute, ending with the given one
+    private synchronized byte[] solarWindTable(long minute) {
+        StringBuilder json = new StringBuilder("[[\"time_tag\",\"bx_gsm\",\"by_gsm\",\"bz_gsm\",\"lon_gsm\",\"lat_gsm\",\"bt\"]");
+        for (long i = minute - 5; i <= minute; i++) {
+            double bz = 8 * Math.sin(i / 90.0);
+            json.append(",[\"").append(tableFormat.format(new Date(i * MINUTE))).append("\",\"2.10\",\"-3.40\",\"")
+                    .append(String.format(Locale.US, "%.2f", bz)).append("\",\"301.2\",\"")
+                    .append(String.format(Locale.US, "%.2f", Math.toDegrees(Math.atan2(bz, 4)))).append("\",\"")
+                    .append(String.format(Locale.US, "%.2f", Math.sqrt(bz * bz + 16))).append("\"]");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
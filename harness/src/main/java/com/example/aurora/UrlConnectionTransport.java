@@ -0,0 +1,100 @@
+package com.example.aurora;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+//HttpTransport over HttpURLConnection for the JVM harness. Requests run on a small pool of their own, like Volley's
+//network dispatchers, and callbacks are handed to the callback executor, which stands in for the main thread.
+final class UrlConnectionTransport implements HttpTransport {
+
+    private static final int THREADS = 4;
+    private static final int TIMEOUT = 30 * 1000;
+
+    private final ExecutorService network;
+    private final Executor callbackExecutor;
+
+    UrlConnectionTransport(Executor callbackExecutor, ThreadFactory threadFactory) {
+        this.callbackExecutor = callbackExecutor;
+        this.network = Executors.newFixedThreadPool(THREADS, threadFactory);
+    }
+
+    @Override
+    public void get(final String url, final String etag, final String lastModified, final Callback callback) {
+        network.execute(new Runnable() {
+            @Override
+            public void run() {
+                HttpURLConnection connection = null;
+                try {
+                    connection = (HttpURLConnection) new URL(url).openConnection();
+                    connection.setConnectTimeout(TIMEOUT);
+                    connection.setReadTimeout(TIMEOUT);
+                    if (etag != null) {
+                        connection.setRequestProperty("If-None-Match", etag);
+                    }
+                    if (lastModified != null) {
+                        connection.setRequestProperty("If-Modified-Since", lastModified);
+                    }
+                    int status = connection.getResponseCode();
+                    String responseEtag = connection.getHeaderField("ETag");
+                    String responseLastModified = connection.getHeaderField("Last-Modified");
+                    if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                        deliver(callback, null, responseEtag, responseLastModified);
+                    } else if (status != HttpURLConnection.HTTP_OK) {
+                        fail(callback, new IOException("HTTP " + status + " for " + url));
+                    } else {
+                        deliver(callback, read(connection.getInputStream()), responseEtag, responseLastModified);
+                    }
+                } catch (IOException e) {
+                    fail(callback, e);
+                } finally {
+                    if (connection != null) {
+                        connection.disconnect();
+                    }
+                }
+            }
+        });
+    }
+
+    void shutdown() {
+        network.shutdownNow();
+    }
+
+    private void deliver(final Callback callback, final byte[] body, final String etag, final String lastModified) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onResponse(body, etag, lastModified);
+            }
+        });
+    }
+
+    private void fail(final Callback callback, final Exception error) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onFailure(error);
+            }
+        });
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}